@@ -6,7 +6,6 @@ import com.bpc.booking.util.*;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -15,26 +14,26 @@ public class Main {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
 
     public static void main(String[] args) {
-        // Initialize the clinic and load data
-        Clinic clinic = new Clinic();
-        List<Physiotherapist> physios = DataLoader.loadPhysiotherapists();
-        DataLoader.loadTreatments(physios);
-        List<Patient> patients = DataLoader.loadPatients();
-        clinic.setPhysiotherapists(physios);
-        clinic.setPatients(patients);
+        // Restore the last snapshot, or load the text data files if any of them changed since it was taken
+        Clinic clinic = DataLoader.loadSnapshot();
+        StartupLoader loader = new StartupLoader();
+        boolean restored = clinic != null;
+        if (!restored) {
+            clinic = loader.load();
+        }
 
         // Print loaded patients to debug
         System.out.println("Loaded patients:");
-        for (Patient p : patients) {
+        for (Patient p : clinic.getPatients()) {
             System.out.println(" - " + p.getId() + ": " + p.getName());
         }
 
-        // Load existing appointments
-        clinic.loadAppointments(physios, patients);
-
-        // Load the availability timetable from timetable.txt
-        System.out.println("\nLoading availability timetable from timetable.txt...");
-        DataLoader.loadTimetable(clinic);
+        System.out.println();
+        if (restored) {
+            System.out.println("Restored appointments and availability timetable from clinic.snapshot.");
+        } else {
+            loader.printLoadTimes();
+        }
 
         // Add sample bookings only if they don't already exist
         System.out.println("\nAdding sample bookings...");
@@ -47,34 +46,25 @@ public class Main {
 
             if (!hasSampleAppointments) {
                 // Book for Dr. Michael Harper
-                Patient patient1 = patients.stream().filter(p -> p.getId().equals("ID101")).findFirst().orElseThrow();
-                Physiotherapist physio1 = physios.stream().filter(p -> p.getId().equals("ID001")).findFirst().orElseThrow();
+                Patient patient1 = requirePatient(clinic, "ID101");
+                Physiotherapist physio1 = requirePhysiotherapist(clinic, "ID001");
                 Treatment treatment1 = physio1.getTreatments().get(0); // Deep Tissue Massage
                 clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 10:00");
-                clinic.getAppointments().stream()
-                        .filter(a -> a.getDateTime().equals("2025-04-01 10:00") && a.getPhysiotherapist().getId().equals("ID001"))
-                        .findFirst()
-                        .ifPresent(a -> a.changeStatus(Status.ATTENDED));
+                clinic.findAppointment("2025-04-01 10:00", physio1).changeStatus(Status.ATTENDED);
 
                 // Book for Dr. Sarah Mitchell
-                Patient patient2 = patients.stream().filter(p -> p.getId().equals("ID102")).findFirst().orElseThrow();
-                Physiotherapist physio2 = physios.stream().filter(p -> p.getId().equals("ID002")).findFirst().orElseThrow();
+                Patient patient2 = requirePatient(clinic, "ID102");
+                Physiotherapist physio2 = requirePhysiotherapist(clinic, "ID002");
                 Treatment treatment2 = physio2.getTreatments().get(0); // Pool Therapy
                 clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 09:00");
-                clinic.getAppointments().stream()
-                        .filter(a -> a.getDateTime().equals("2025-04-01 09:00") && a.getPhysiotherapist().getId().equals("ID002"))
-                        .findFirst()
-                        .ifPresent(a -> a.changeStatus(Status.BOOKED));
+                clinic.findAppointment("2025-04-01 09:00", physio2).changeStatus(Status.BOOKED);
 
                 // Book for Dr. Andrew Kim
-                Patient patient3 = patients.stream().filter(p -> p.getId().equals("ID103")).findFirst().orElseThrow();
-                Physiotherapist physio3 = physios.stream().filter(p -> p.getId().equals("ID003")).findFirst().orElseThrow();
+                Patient patient3 = requirePatient(clinic, "ID103");
+                Physiotherapist physio3 = requirePhysiotherapist(clinic, "ID003");
                 Treatment treatment3 = physio3.getTreatments().get(0); // Pediatric Massage
                 clinic.bookAppointment(patient3, physio3, treatment3, "2025-04-01 13:00");
-                clinic.getAppointments().stream()
-                        .filter(a -> a.getDateTime().equals("2025-04-01 13:00") && a.getPhysiotherapist().getId().equals("ID003"))
-                        .findFirst()
-                        .ifPresent(a -> a.changeStatus(Status.CANCELLED));
+                clinic.findAppointment("2025-04-01 13:00", physio3).changeStatus(Status.CANCELLED);
 
                 // Save the appointments immediately after adding sample bookings
                 clinic.saveAppointments();
@@ -86,44 +76,30 @@ public class Main {
             System.out.println("Error adding sample bookings: " + e.getMessage());
         }
 
-        // Create a copy of the appointments list to restore after displaying the timetable
-        List<Appointment> originalAppointments = new ArrayList<>(clinic.getAppointments());
-
         // Display the timetable
-        displayTimetable(clinic);
-
-        // Restore the original appointments list to ensure temporary cancellations are not saved
-        clinic.setAppointments(originalAppointments);
-
-        // Save the appointments again to ensure only the original appointments are persisted
-        clinic.saveAppointments();
+        displayTimetable(clinic, new BookingService(clinic));
 
         // Generate the end-of-term report
         ReportService reportService = new ReportService(clinic);
         reportService.generateReport();
 
+        // Keep a snapshot for a fast restart
+        clinic.saveSnapshot(DataLoader.SNAPSHOT_FILE).join();
     }
 
-    private static void displayTimetable(Clinic clinic) {
+    private static void displayTimetable(Clinic clinic, BookingService bookingService) {
         System.out.println("\n=== Availability Timetable (April 1 - April 28, 2025) ===");
         LocalDateTime startDate = LocalDateTime.of(2025, 4, 1, 0, 0);
         LocalDateTime endDate = LocalDateTime.of(2025, 4, 28, 23, 59);
 
         for (Physiotherapist physio : clinic.getPhysiotherapists()) {
             System.out.println("\nPhysiotherapist: " + physio.getName() + " (Phone: " + physio.getPhoneNumber() + ")");
-            List<Availability> physioAvailabilities = clinic.getAvailabilities().stream()
-                    .filter(a -> a.getPhysioId().equals(physio.getId()))
-                    .filter(a -> !a.getDate().isBefore(startDate.toLocalDate()) && !a.getDate().isAfter(endDate.toLocalDate()))
-                    .sorted(Comparator.comparing(Availability::getDate).thenComparing(Availability::getStartTime))
-                    .collect(Collectors.toList());
+            List<Availability> physioAvailabilities = clinic.getAvailabilities(physio, startDate.toLocalDate(), endDate.toLocalDate());
 
-            List<Appointment> physioAppointments = clinic.getAppointments().stream()
+            List<Appointment> physioAppointments = clinic.getAppointments(startDate.toLocalDate(), endDate.toLocalDate()).stream()
                     .filter(a -> a.getPhysiotherapist().equals(physio))
-                    .filter(a -> {
-                        LocalDateTime appointmentDate = LocalDateTime.parse(a.getDateTime(), formatter);
-                        return !appointmentDate.isBefore(startDate) && !appointmentDate.isAfter(endDate);
-                    })
-                    .sorted(Comparator.comparing(a -> LocalDateTime.parse(a.getDateTime(), formatter)))
+                    .filter(a -> !a.getStart().isAfter(endDate))
+                    .sorted(Comparator.comparingLong(Appointment::getStartMinute))
                     .collect(Collectors.toList());
 
             // Display availability and appointments by week
@@ -150,10 +126,7 @@ public class Main {
                 // Display scheduled appointments
                 System.out.println("Scheduled Appointments:");
                 List<Appointment> weekAppointments = physioAppointments.stream()
-                        .filter(a -> {
-                            LocalDateTime appointmentDate = LocalDateTime.parse(a.getDateTime(), formatter);
-                            return !appointmentDate.isBefore(weekStart) && !appointmentDate.isAfter(weekEnd);
-                        })
+                        .filter(a -> !a.getStart().isBefore(weekStart) && !a.getStart().isAfter(weekEnd))
                         .collect(Collectors.toList());
 
                 if (weekAppointments.isEmpty()) {
@@ -170,44 +143,31 @@ public class Main {
             System.out.println("\nAvailable Time Slots (Sample for April 1 - April 4, 2025):");
             LocalDateTime availStart = LocalDateTime.of(2025, 4, 1, 9, 0);
             LocalDateTime availEnd = LocalDateTime.of(2025, 4, 4, 17, 0);
-            List<String> availableSlots = new ArrayList<>();
-            Patient dummyPatient = clinic.getPatients().get(0);
-            Treatment dummyTreatment = physio.getTreatments().get(0);
-
-            // Create a temporary copy of the appointments list to avoid modifying the actual list
-            List<Appointment> tempAppointments = new ArrayList<>(clinic.getAppointments());
-
-            LocalDateTime current = availStart;
-            while (current.isBefore(availEnd)) {
-                if (current.getDayOfWeek().getValue() <= 5) { // Monday-Friday
-                    if (current.getHour() >= 9 && current.getHour() < 17) { // 9 AM-5 PM
-                        String dateTime = current.format(formatter);
-                        try {
-                            // Temporarily set the appointments list to the copy
-                            clinic.setAppointments(tempAppointments);
-                            clinic.bookAppointment(dummyPatient, physio, dummyTreatment, dateTime);
-                            clinic.cancelAppointment(dateTime, physio);
-                            availableSlots.add(dateTime);
-                        } catch (Exception e) {
-                            // Slot is not available
-                        } finally {
-                            // Restore the temporary appointments list for the next iteration
-                            clinic.setAppointments(tempAppointments);
-                        }
-                    }
-                    current = current.plusHours(1);
-                } else {
-                    current = current.plusDays(1).withHour(9).withMinute(0);
-                }
-            }
+            List<LocalDateTime> availableSlots = bookingService.findFreeSlots(physio, physio.getTreatments().get(0), availStart, availEnd);
 
             if (availableSlots.isEmpty()) {
                 System.out.println(" - No available slots.");
             } else {
-                for (String slot : availableSlots) {
-                    System.out.println(" - " + slot);
+                for (LocalDateTime slot : availableSlots) {
+                    System.out.println(" - " + slot.format(formatter));
                 }
             }
         }
     }
+
+    private static Patient requirePatient(Clinic clinic, String id) {
+        Patient patient = clinic.getPatientById(id);
+        if (patient == null) {
+            throw new IllegalArgumentException("Patient not found: " + id);
+        }
+        return patient;
+    }
+
+    private static Physiotherapist requirePhysiotherapist(Clinic clinic, String id) {
+        Physiotherapist physio = clinic.getPhysiotherapistById(id);
+        if (physio == null) {
+            throw new IllegalArgumentException("Physiotherapist not found: " + id);
+        }
+        return physio;
+    }
 }
\ No newline at end of file
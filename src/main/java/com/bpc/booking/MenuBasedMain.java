@@ -4,9 +4,10 @@ import com.bpc.booking.model.*;
 import com.bpc.booking.service.*;
 import com.bpc.booking.util.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Scanner;
@@ -14,28 +15,42 @@ import java.util.stream.Collectors;
 
 public class MenuBasedMain {
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 200;
+    private static final long PERSISTENCE_MAX_DELAY_MILLIS = 500;
 
     public static void main(String[] args) {
-        // Initialize the clinic and load data
-        Clinic clinic = new Clinic();
-        List<Physiotherapist> physios = DataLoader.loadPhysiotherapists();
-        DataLoader.loadTreatments(physios);
-        List<Patient> patients = DataLoader.loadPatients();
-        clinic.setPhysiotherapists(physios);
-        clinic.setPatients(patients);
+        // Restore the last snapshot, or load the text data files if any of them changed since it was taken
+        Clinic clinic = DataLoader.loadSnapshot();
+        StartupLoader loader = new StartupLoader();
+        boolean restored = clinic != null;
+        if (!restored) {
+            clinic = loader.load();
+        }
 
         // Print loaded patients to debug
         System.out.println("Loaded patients:");
-        for (Patient p : patients) {
+        for (Patient p : clinic.getPatients()) {
             System.out.println(" - " + p.getId() + ": " + p.getName());
         }
 
-        // Load existing appointments
-        clinic.loadAppointments(physios, patients);
+        System.out.println();
+        if (restored) {
+            System.out.println("Restored appointments and availability timetable from clinic.snapshot.");
+        } else {
+            loader.printLoadTimes();
+        }
+
+        // Journal every change instead of rewriting appointments.txt after each action
+        try {
+            clinic.openJournal(AppointmentJournal.SyncPolicy.ALWAYS, JOURNAL_COMPACTION_THRESHOLD);
+        } catch (IOException e) {
+            System.out.println("Could not open the appointment journal; changes will be saved on exit: " + e.getMessage());
+        }
 
-        // Load the availability timetable from timetable.txt
-        System.out.println("\nLoading availability timetable from timetable.txt...");
-        DataLoader.loadTimetable(clinic);
+        // Write data files in the background, and write whatever is still pending if the JVM exits
+        PersistenceWriter persistence = new PersistenceWriter(clinic, PERSISTENCE_MAX_DELAY_MILLIS);
+        clinic.setJournalCompactor(persistence::saveAppointments);
+        Runtime.getRuntime().addShutdownHook(new Thread(persistence::close));
 
         // Initialize services
         BookingService bookingService = new BookingService(clinic);
@@ -74,7 +89,6 @@ public class MenuBasedMain {
                         String patientId = scanner.nextLine();
                         bookingService.bookByExpertise(expertise, patientId);
                         System.out.println("Appointment booked successfully!");
-                        clinic.saveAppointments();
                     } catch (Exception e) {
                         System.out.println("Error: " + e.getMessage());
                     }
@@ -88,7 +102,6 @@ public class MenuBasedMain {
                         String patientId = scanner.nextLine();
                         bookingService.bookByPhysioName(physioName, patientId);
                         System.out.println("Appointment booked successfully!");
-                        clinic.saveAppointments();
                     } catch (Exception e) {
                         System.out.println("Error: " + e.getMessage());
                     }
@@ -104,7 +117,6 @@ public class MenuBasedMain {
                         if (physio != null) {
                             clinic.cancelAppointment(dateTime, physio);
                             System.out.println("Appointment canceled successfully!");
-                            clinic.saveAppointments();
                         } else {
                             System.out.println("Physiotherapist not found!");
                         }
@@ -117,11 +129,17 @@ public class MenuBasedMain {
                     try {
                         System.out.print("Enter date and time of appointment to mark as attended (e.g., 2025-04-01 10:00): ");
                         String dateTime = scanner.nextLine();
-                        Appointment appointment = findAppointmentByDateTime(clinic, dateTime);
+                        System.out.print("Enter physiotherapist name (e.g., Dr. Michael Harper): ");
+                        String physioName = scanner.nextLine();
+                        Physiotherapist physio = clinic.searchByPhysioName(physioName);
+                        if (physio == null) {
+                            System.out.println("Physiotherapist not found!");
+                            break;
+                        }
+                        Appointment appointment = clinic.findAppointment(dateTime, physio);
                         if (appointment != null) {
-                            appointment.changeStatus(Status.ATTENDED);
+                            clinic.markAttended(dateTime, physio);
                             System.out.println("Appointment marked as attended!");
-                            clinic.saveAppointments();
                         } else {
                             System.out.println("Appointment not found!");
                         }
@@ -135,11 +153,7 @@ public class MenuBasedMain {
                     break;
 
                 case 6:
-                    // Create a copy of the appointments list to restore after displaying the timetable
-                    List<Appointment> originalAppointments = new ArrayList<>(clinic.getAppointments());
-                    displayTimetable(clinic);
-                    // Restore the original appointments list
-                    clinic.setAppointments(originalAppointments);
+                    displayTimetable(clinic, bookingService);
                     break;
 
                 case 7:
@@ -154,7 +168,7 @@ public class MenuBasedMain {
                         String phoneNumber = scanner.nextLine();
                         Patient patient = new Patient(id, name, address, phoneNumber);
                         clinic.addPatient(patient);
-                        clinic.savePatients();
+                        persistence.savePatients();
                         System.out.println("Patient added successfully!");
                     } catch (Exception e) {
                         System.out.println("Error: " + e.getMessage());
@@ -166,7 +180,7 @@ public class MenuBasedMain {
                         System.out.print("Enter patient ID to remove (e.g., ID113): ");
                         String patientId = scanner.nextLine();
                         clinic.removePatient(patientId);
-                        clinic.savePatients();
+                        persistence.savePatients();
                         System.out.println("Patient removed successfully!");
                     } catch (Exception e) {
                         System.out.println("Error: " + e.getMessage());
@@ -184,17 +198,15 @@ public class MenuBasedMain {
                             System.out.println("Physiotherapist not found!");
                             break;
                         }
-                        Appointment appointment = findAppointmentByDateTime(clinic, oldDateTime);
-                        if (appointment == null || !appointment.getPhysiotherapist().equals(physio)) {
+                        Appointment appointment = clinic.findAppointment(oldDateTime, physio);
+                        if (appointment == null) {
                             System.out.println("Appointment not found for this physiotherapist!");
                             break;
                         }
-                        clinic.cancelAppointment(oldDateTime, physio);
                         System.out.print("Enter new date and time (e.g., 2025-04-29 10:00): ");
                         String newDateTime = scanner.nextLine();
-                        clinic.bookAppointment(appointment.getPatient(), physio, appointment.getTreatment(), newDateTime);
+                        clinic.rescheduleAppointment(oldDateTime, physio, newDateTime);
                         System.out.println("Appointment changed successfully!");
-                        clinic.saveAppointments();
                     } catch (Exception e) {
                         System.out.println("Error: " + e.getMessage());
                     }
@@ -202,6 +214,20 @@ public class MenuBasedMain {
 
                 case 10:
                     System.out.println("Exiting...");
+                    persistence.close();
+                    // Fold the journal into a fresh appointments.txt
+                    try {
+                        clinic.saveAppointments();
+                    } catch (UncheckedIOException e) {
+                        e.printStackTrace();
+                    }
+                    try {
+                        clinic.closeJournal();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    // Keep a snapshot for a fast restart
+                    clinic.saveSnapshot(DataLoader.SNAPSHOT_FILE).join();
                     scanner.close();
                     return;
 
@@ -211,35 +237,19 @@ public class MenuBasedMain {
         }
     }
 
-    private static Appointment findAppointmentByDateTime(Clinic clinic, String dateTime) {
-        for (Appointment a : clinic.getAppointments()) {
-            if (a.getDateTime().equals(dateTime)) {
-                return a;
-            }
-        }
-        return null;
-    }
-
-    private static void displayTimetable(Clinic clinic) {
+    private static void displayTimetable(Clinic clinic, BookingService bookingService) {
         System.out.println("\n=== Availability Timetable (April 1 - April 28, 2025) ===");
         LocalDateTime startDate = LocalDateTime.of(2025, 4, 1, 0, 0);
         LocalDateTime endDate = LocalDateTime.of(2025, 4, 28, 23, 59);
 
         for (Physiotherapist physio : clinic.getPhysiotherapists()) {
             System.out.println("\nPhysiotherapist: " + physio.getName() + " (Phone: " + physio.getPhoneNumber() + ")");
-            List<Availability> physioAvailabilities = clinic.getAvailabilities().stream()
-                    .filter(a -> a.getPhysioId().equals(physio.getId()))
-                    .filter(a -> !a.getDate().isBefore(startDate.toLocalDate()) && !a.getDate().isAfter(endDate.toLocalDate()))
-                    .sorted(Comparator.comparing(Availability::getDate).thenComparing(Availability::getStartTime))
-                    .collect(Collectors.toList());
+            List<Availability> physioAvailabilities = clinic.getAvailabilities(physio, startDate.toLocalDate(), endDate.toLocalDate());
 
-            List<Appointment> physioAppointments = clinic.getAppointments().stream()
+            List<Appointment> physioAppointments = clinic.getAppointments(startDate.toLocalDate(), endDate.toLocalDate()).stream()
                     .filter(a -> a.getPhysiotherapist().equals(physio))
-                    .filter(a -> {
-                        LocalDateTime appointmentDate = LocalDateTime.parse(a.getDateTime(), formatter);
-                        return !appointmentDate.isBefore(startDate) && !appointmentDate.isAfter(endDate);
-                    })
-                    .sorted(Comparator.comparing(a -> LocalDateTime.parse(a.getDateTime(), formatter)))
+                    .filter(a -> !a.getStart().isAfter(endDate))
+                    .sorted(Comparator.comparingLong(Appointment::getStartMinute))
                     .collect(Collectors.toList());
 
             // Display availability and appointments by week
@@ -266,10 +276,7 @@ public class MenuBasedMain {
                 // Display scheduled appointments
                 System.out.println("Scheduled Appointments:");
                 List<Appointment> weekAppointments = physioAppointments.stream()
-                        .filter(a -> {
-                            LocalDateTime appointmentDate = LocalDateTime.parse(a.getDateTime(), formatter);
-                            return !appointmentDate.isBefore(weekStart) && !appointmentDate.isAfter(weekEnd);
-                        })
+                        .filter(a -> !a.getStart().isBefore(weekStart) && !a.getStart().isAfter(weekEnd))
                         .collect(Collectors.toList());
 
                 if (weekAppointments.isEmpty()) {
@@ -286,42 +293,13 @@ public class MenuBasedMain {
             System.out.println("\nAvailable Time Slots (Sample for April 1 - April 4, 2025):");
             LocalDateTime availStart = LocalDateTime.of(2025, 4, 1, 9, 0);
             LocalDateTime availEnd = LocalDateTime.of(2025, 4, 4, 17, 0);
-            List<String> availableSlots = new ArrayList<>();
-            Patient dummyPatient = clinic.getPatients().get(0);
-            Treatment dummyTreatment = physio.getTreatments().get(0);
-
-            // Create a temporary copy of the appointments list to avoid modifying the actual list
-            List<Appointment> tempAppointments = new ArrayList<>(clinic.getAppointments());
-
-            LocalDateTime current = availStart;
-            while (current.isBefore(availEnd)) {
-                if (current.getDayOfWeek().getValue() <= 5) { // Monday-Friday
-                    if (current.getHour() >= 9 && current.getHour() < 17) { // 9 AM-5 PM
-                        String dateTime = current.format(formatter);
-                        try {
-                            // Temporarily set the appointments list to the copy
-                            clinic.setAppointments(tempAppointments);
-                            clinic.bookAppointment(dummyPatient, physio, dummyTreatment, dateTime);
-                            clinic.cancelAppointment(dateTime, physio);
-                            availableSlots.add(dateTime);
-                        } catch (Exception e) {
-                            // Slot is not available
-                        } finally {
-                            // Restore the temporary appointments list for the next iteration
-                            clinic.setAppointments(tempAppointments);
-                        }
-                    }
-                    current = current.plusHours(1);
-                } else {
-                    current = current.plusDays(1).withHour(9).withMinute(0);
-                }
-            }
+            List<LocalDateTime> availableSlots = bookingService.findFreeSlots(physio, physio.getTreatments().get(0), availStart, availEnd);
 
             if (availableSlots.isEmpty()) {
                 System.out.println(" - No available slots.");
             } else {
-                for (String slot : availableSlots) {
-                    System.out.println(" - " + slot);
+                for (LocalDateTime slot : availableSlots) {
+                    System.out.println(" - " + slot.format(formatter));
                 }
             }
         }
@@ -1,22 +1,53 @@
 package com.bpc.booking.model;
 
-import java.util.Objects;
+import com.bpc.booking.util.CsvReader;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 
 public class Appointment {
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
     private Patient patient;
     private Physiotherapist physiotherapist;
     private Treatment treatment;
-    private String dateTime;
-    private Status status;
+    private String dateTime; // kept verbatim for file I/O and display
+    private LocalDateTime start;
+    private long startMinute;
+    private long endMinute;
+    private AppointmentKey key;
+    private volatile Status status;
+    private volatile Clinic clinic;
+    private volatile boolean readOnly;
 
     public Appointment(Patient patient, Physiotherapist physiotherapist, Treatment treatment, String dateTime) {
+        this(patient, physiotherapist, treatment, dateTime, LocalDateTime.parse(dateTime, formatter));
+    }
+
+    public Appointment(Patient patient, Physiotherapist physiotherapist, Treatment treatment, LocalDateTime start) {
+        this(patient, physiotherapist, treatment, start.format(formatter), start);
+    }
+
+    private Appointment(Patient patient, Physiotherapist physiotherapist, Treatment treatment, String dateTime, LocalDateTime start) {
         this.patient = patient;
         this.physiotherapist = physiotherapist;
         this.treatment = treatment;
         this.dateTime = dateTime;
+        this.start = start;
+        this.startMinute = toEpochMinute(start);
+        this.endMinute = startMinute + treatment.getDuration();
+        this.key = new AppointmentKey(physiotherapist == null ? null : physiotherapist.getId(), startMinute);
         this.status = Status.BOOKED;
     }
 
+    /**
+     * Converts a date-time to minutes since the epoch, the unit used by all appointment time comparisons.
+     */
+    public static long toEpochMinute(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
     public Patient getPatient() {
         return patient;
     }
@@ -33,33 +64,70 @@ public class Appointment {
         return dateTime;
     }
 
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public long getStartMinute() {
+        return startMinute;
+    }
+
+    public long getEndMinute() {
+        return endMinute;
+    }
+
     public Status getStatus() {
         return status;
     }
 
+    /**
+     * Changes the status, through the clinic when the appointment belongs to one. Throws
+     * {@link IllegalStateException} for a read-only appointment: an archived one, a view of one, or a copy
+     * read from storage for a single query.
+     */
     public void changeStatus(Status status) {
+        if (readOnly) {
+            throw new IllegalStateException("This appointment is read-only and cannot change status.");
+        }
+        if (clinic != null) {
+            clinic.changeStatus(this, status);
+        } else {
+            this.status = status;
+        }
+    }
+
+    void applyStatus(Status status) {
         this.status = status;
     }
 
+    void setClinic(Clinic clinic) {
+        this.clinic = clinic;
+    }
+
+    void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Appointment that = (Appointment) o;
-        return Objects.equals(dateTime, that.dateTime) &&
-                Objects.equals(physiotherapist, that.physiotherapist);
+        return key.equals(that.key);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(dateTime, physiotherapist);
+        return key.hashCode();
     }
 
     @Override
     public String toString() {
-        return patient.getId() + "," + patient.getName() + "," + patient.getAddress() + "," + patient.getPhoneNumber() + "," +
-                physiotherapist.getId() + "," + physiotherapist.getName() + "," + treatment.getName() + "," +
-                treatment.getExpertise() + "," + treatment.getDuration() + "," + treatment.getCost() + "," +
-                dateTime + "," + status + "," + physiotherapist.getPhoneNumber();
+        return CsvReader.field(patient.getId()) + "," + CsvReader.field(patient.getName()) + "," +
+                CsvReader.field(patient.getAddress()) + "," + CsvReader.field(patient.getPhoneNumber()) + "," +
+                CsvReader.field(physiotherapist.getId()) + "," + CsvReader.field(physiotherapist.getName()) + "," +
+                CsvReader.field(treatment.getName()) + "," + CsvReader.field(treatment.getExpertise()) + "," +
+                treatment.getDuration() + "," + treatment.getCost() + "," +
+                dateTime + "," + status + "," + CsvReader.field(physiotherapist.getPhoneNumber());
     }
 }
\ No newline at end of file
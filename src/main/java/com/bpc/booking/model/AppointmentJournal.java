@@ -0,0 +1,221 @@
+package com.bpc.booking.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only log of appointment mutations, written ahead of the in-memory change and replayed on top of
+ * the base appointments file at startup.
+ * <p>
+ * The first line names the checksum of the base file the journal applies to. Folding the journal into a
+ * fresh base file rewrites the base first and then resets the journal, so a crash in between leaves a
+ * journal whose checksum no longer matches and which is therefore ignored instead of applied twice.
+ * Each record is one line; a torn last line without its terminating newline is dropped on replay.
+ */
+public final class AppointmentJournal implements Closeable {
+    /**
+     * When appended records are forced to the storage device.
+     */
+    public enum SyncPolicy {
+        /** Force after every record, so a mutation is durable once it returns. */
+        ALWAYS,
+        /**
+         * Force on append once a second has passed since the last force, and from a background timer each
+         * second while records are unforced; a crash can lose up to the last second of records.
+         */
+        EVERY_SECOND,
+        /** Leave flushing to the operating system. */
+        NEVER
+    }
+
+    static final String BOOKED = "B";
+    static final String STATUS = "S";
+    static final String RESCHEDULED = "R";
+    private static final String HEADER = "#base ";
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+    // Shared by all journals with the EVERY_SECOND policy, so the tail of a burst is forced without another append
+    private static final ScheduledExecutorService SYNC_TIMER = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "journal-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path file;
+    private final SyncPolicy policy;
+    private FileChannel channel;
+    private int size;
+    private long lastSync;
+    private boolean unsynced;
+    private ScheduledFuture<?> syncTask;
+
+    private AppointmentJournal(Path file, SyncPolicy policy) {
+        this.file = file;
+        this.policy = policy;
+    }
+
+    /**
+     * Opens the journal for appending. A journal written against a different base file is discarded, and a
+     * torn last record is cut off so the next record starts on a line of its own.
+     */
+    static AppointmentJournal open(Path file, long baseChecksum, SyncPolicy policy) throws IOException {
+        AppointmentJournal journal = new AppointmentJournal(file, policy);
+        List<String> records = readRecords(file, baseChecksum);
+        if (records == null) {
+            journal.reset(baseChecksum);
+        } else {
+            long end = completeLength(file);
+            journal.channel = FileChannel.open(file, StandardOpenOption.WRITE);
+            journal.channel.truncate(end);
+            journal.channel.position(end);
+            journal.size = records.size();
+        }
+        if (policy == SyncPolicy.EVERY_SECOND) {
+            journal.syncTask = SYNC_TIMER.scheduleWithFixedDelay(journal::syncIfDue,
+                    SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return journal;
+    }
+
+    /**
+     * Returns the complete records of the journal if it applies to the base file with the given checksum,
+     * or null if the file is missing or belongs to another base file.
+     */
+    static List<String> readRecords(Path file, long baseChecksum) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        String[] lines = content.split("\n", -1);
+        if (lines.length < 2 || !lines[0].equals(HEADER + Long.toHexString(baseChecksum))) {
+            return null;
+        }
+        List<String> records = new ArrayList<>();
+        // The last element follows the final newline: empty, or a record torn by a crash
+        for (int i = 1; i < lines.length - 1; i++) {
+            if (!lines[i].isEmpty()) {
+                records.add(lines[i]);
+            }
+        }
+        return records;
+    }
+
+    // Length of the journal up to and including its last newline
+    private static long completeLength(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        int end = content.length;
+        while (end > 0 && content[end - 1] != '\n') {
+            end--;
+        }
+        return end;
+    }
+
+    static String booked(Appointment appointment) {
+        return BOOKED + "," + appointment;
+    }
+
+    /**
+     * One record for both halves of a move, so replay either cancels the old appointment and books the new
+     * one or, for a torn record, does neither.
+     */
+    static String rescheduled(Appointment from, Appointment to) {
+        return RESCHEDULED + "," + from.getPhysiotherapist().getId() + "," + from.getDateTime() + "," + to;
+    }
+
+    static String statusChanged(Appointment appointment, Status status) {
+        return STATUS + "," + appointment.getPhysiotherapist().getId() + "," + appointment.getDateTime() + "," + status;
+    }
+
+    synchronized void append(String record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        size++;
+        unsynced = true;
+        if (policy == SyncPolicy.ALWAYS || policy == SyncPolicy.EVERY_SECOND
+                && System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MILLIS) {
+            sync();
+        }
+    }
+
+    // Timer task: forces the records appended since the last force
+    private synchronized void syncIfDue() {
+        if (channel == null || !unsynced) {
+            return;
+        }
+        try {
+            sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        lastSync = System.currentTimeMillis();
+        unsynced = false;
+    }
+
+    /**
+     * Returns the number of records appended since the journal was last reset.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Atomically replaces the journal with an empty one that applies to the base file with the given checksum.
+     */
+    synchronized void reset(long baseChecksum) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.wrap((HEADER + Long.toHexString(baseChecksum) + "\n").getBytes(StandardCharsets.UTF_8)));
+            out.force(true);
+        }
+        replace(temp, file);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = 0;
+        unsynced = false;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+            syncTask = null;
+        }
+        if (channel != null) {
+            if (policy != SyncPolicy.NEVER) {
+                channel.force(false);
+            }
+            channel.close();
+            channel = null;
+        }
+    }
+
+    static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.bpc.booking.model;
+
+import java.util.Objects;
+
+/**
+ * Identity of an appointment: the physiotherapist and the start minute. Two appointments with the same key
+ * are equal, and a physiotherapist has at most one non-cancelled appointment per key. It compares the
+ * physiotherapist ID because appointments are compared across clinics; within a clinic, slots are looked up
+ * by the physiotherapist's surrogate key instead.
+ */
+final class AppointmentKey {
+    private final String physioId;
+    private final long startMinute;
+
+    AppointmentKey(String physioId, long startMinute) {
+        this.physioId = physioId;
+        this.startMinute = startMinute;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AppointmentKey that = (AppointmentKey) o;
+        return startMinute == that.startMinute && Objects.equals(physioId, that.physioId);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(startMinute) + Objects.hashCode(physioId);
+    }
+}
@@ -0,0 +1,182 @@
+package com.bpc.booking.model;
+
+import com.bpc.booking.util.CsvReader;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Manifest of month-partitioned appointment storage, used when the appointments file name ends in
+ * {@value #EXTENSION}. Each month with appointments has its own partition file in the text format, next to
+ * the manifest. The manifest lists one line per month: the month, its partition file and its record count.
+ * Each month line is followed by one line per physiotherapist with appointments that month: the month, the
+ * physiotherapist's ID, the booked, attended and cancelled counts and the attended revenue in cents, so
+ * statistics can cover months that are not in memory. Manifests written without them still read; the
+ * statistics of their months are then unknown.
+ * <p>
+ * A save writes changed months to new files named after the save's generation and then replaces the
+ * manifest atomically, so the manifest always names a consistent set of partitions. The manifest's checksum
+ * plays the role of the base file checksum for the journal.
+ */
+final class AppointmentPartitions {
+    static final String EXTENSION = ".manifest";
+    private static final String HEADER = "#appointment partitions";
+
+    private final Path manifest;
+    private final int generation;
+    private final NavigableMap<YearMonth, String> files = new TreeMap<>();
+    private final Map<YearMonth, Integer> counts = new TreeMap<>();
+    private final Map<YearMonth, Map<String, AppointmentStatistics>> statistics = new TreeMap<>();
+
+    private AppointmentPartitions(Path manifest, int generation) {
+        this.manifest = manifest;
+        this.generation = generation;
+    }
+
+    static boolean isManifest(Path file) {
+        return file.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * Reads the manifest, feeding its bytes to {@code checksum}. A missing manifest reads as an empty one.
+     */
+    static AppointmentPartitions read(Path manifest, CRC32 checksum) throws IOException {
+        if (!Files.exists(manifest)) {
+            return new AppointmentPartitions(manifest, 0);
+        }
+        try (CsvReader reader = new CsvReader(manifest, checksum)) {
+            if (!reader.next() || reader.fieldCount() != 2 || !reader.get(0).equals(HEADER)) {
+                throw new IOException("Not an appointment partition manifest: " + manifest);
+            }
+            AppointmentPartitions partitions = new AppointmentPartitions(manifest, reader.getInt(1));
+            while (reader.next()) {
+                if (reader.fieldCount() == 3) {
+                    YearMonth month = YearMonth.parse(reader.get(0));
+                    partitions.files.put(month, reader.get(1));
+                    partitions.counts.put(month, reader.getInt(2));
+                } else if (reader.fieldCount() == 6) {
+                    AppointmentStatistics physioStatistics = new AppointmentStatistics(reader.getInt(2),
+                            reader.getInt(3), reader.getInt(4), Long.parseLong(reader.get(5)));
+                    partitions.statistics.computeIfAbsent(YearMonth.parse(reader.get(0)), m -> new TreeMap<>())
+                            .put(reader.get(1), physioStatistics);
+                }
+            }
+            return partitions;
+        }
+    }
+
+    /**
+     * Returns an empty manifest for the next save, which carries forward the partitions it does not replace.
+     */
+    AppointmentPartitions next() {
+        return new AppointmentPartitions(manifest, generation + 1);
+    }
+
+    /**
+     * Returns the stored months overlapping [from, to]; null bounds are open.
+     */
+    List<YearMonth> months(LocalDate from, LocalDate to) {
+        if (files.isEmpty()) {
+            return new ArrayList<>();
+        }
+        YearMonth first = from == null ? files.firstKey() : YearMonth.from(from);
+        YearMonth last = to == null ? files.lastKey() : YearMonth.from(to);
+        return first.isAfter(last) ? new ArrayList<>() : new ArrayList<>(files.subMap(first, true, last, true).keySet());
+    }
+
+    boolean contains(YearMonth month) {
+        return files.containsKey(month);
+    }
+
+    Path partitionFile(YearMonth month) {
+        return manifest.resolveSibling(files.get(month));
+    }
+
+    /**
+     * Returns the statistics of the stored month by physiotherapist ID, or null if the manifest does not
+     * record them.
+     */
+    Map<String, AppointmentStatistics> statistics(YearMonth month) {
+        return statistics.get(month);
+    }
+
+    void carryForward(AppointmentPartitions previous, YearMonth month) {
+        files.put(month, previous.files.get(month));
+        counts.put(month, previous.counts.get(month));
+        Map<String, AppointmentStatistics> monthStatistics = previous.statistics.get(month);
+        if (monthStatistics != null) {
+            statistics.put(month, monthStatistics);
+        }
+    }
+
+    /**
+     * Records a partition written for this generation with the month's appointments and returns the file to
+     * write them to.
+     */
+    Path addPartition(YearMonth month, List<Appointment> appointments) {
+        String name = manifest.getFileName().toString();
+        String prefix = name.substring(0, name.length() - EXTENSION.length());
+        files.put(month, prefix + "-" + month + "." + generation + ".txt");
+        counts.put(month, appointments.size());
+        Map<String, AppointmentStatistics.Counters> byPhysio = new TreeMap<>();
+        for (Appointment appointment : appointments) {
+            byPhysio.computeIfAbsent(appointment.getPhysiotherapist().getId(), id -> new AppointmentStatistics.Counters())
+                    .add(appointment.getStatus(), appointment.getTreatment());
+        }
+        Map<String, AppointmentStatistics> monthStatistics = new TreeMap<>();
+        byPhysio.forEach((id, counters) -> monthStatistics.put(id, counters.snapshot()));
+        statistics.put(month, monthStatistics);
+        return partitionFile(month);
+    }
+
+    /**
+     * Replaces the manifest file atomically and returns the checksum of its content.
+     */
+    long write() throws IOException {
+        Path temp = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new CheckedOutputStream(out, checksum)));
+            writer.write(HEADER + "," + generation);
+            writer.newLine();
+            for (Map.Entry<YearMonth, String> entry : files.entrySet()) {
+                writer.write(entry.getKey() + "," + entry.getValue() + "," + counts.get(entry.getKey()));
+                writer.newLine();
+                for (Map.Entry<String, AppointmentStatistics> physio : statistics.getOrDefault(entry.getKey(), Map.of()).entrySet()) {
+                    AppointmentStatistics stats = physio.getValue();
+                    writer.write(entry.getKey() + "," + CsvReader.field(physio.getKey()) + "," + stats.getBooked() + ","
+                            + stats.getAttended() + "," + stats.getCancelled() + "," + stats.getRevenueCents());
+                    writer.newLine();
+                }
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        AppointmentJournal.replace(temp, manifest);
+        return checksum.getValue();
+    }
+
+    /**
+     * Deletes the partition files of {@code previous} that this manifest no longer names.
+     */
+    void deleteSuperseded(AppointmentPartitions previous) throws IOException {
+        for (Map.Entry<YearMonth, String> entry : previous.files.entrySet()) {
+            if (!entry.getValue().equals(files.get(entry.getKey()))) {
+                Files.deleteIfExists(previous.partitionFile(entry.getKey()));
+            }
+        }
+    }
+}
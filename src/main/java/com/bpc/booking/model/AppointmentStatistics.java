@@ -0,0 +1,88 @@
+package com.bpc.booking.model;
+
+/**
+ * Appointment counts by status and the revenue of attended appointments, for one physiotherapist or the
+ * whole clinic. Revenue is kept in cents so that it can be maintained incrementally without rounding drift.
+ */
+public final class AppointmentStatistics {
+    private final int booked;
+    private final int attended;
+    private final int cancelled;
+    private final long revenueCents;
+
+    AppointmentStatistics(int booked, int attended, int cancelled, long revenueCents) {
+        this.booked = booked;
+        this.attended = attended;
+        this.cancelled = cancelled;
+        this.revenueCents = revenueCents;
+    }
+
+    public int getBooked() {
+        return booked;
+    }
+
+    public int getAttended() {
+        return attended;
+    }
+
+    public int getCancelled() {
+        return cancelled;
+    }
+
+    public int getTotal() {
+        return booked + attended + cancelled;
+    }
+
+    public double getRevenue() {
+        return revenueCents / 100.0;
+    }
+
+    long getRevenueCents() {
+        return revenueCents;
+    }
+
+    /**
+     * Counters of one physiotherapist, updated under that physiotherapist's lock as appointments are added
+     * and change status. Reads take a consistent copy.
+     */
+    static final class Counters {
+        private final int[] counts = new int[Status.values().length];
+        private long revenueCents;
+
+        synchronized void add(Status status, Treatment treatment) {
+            counts[status.ordinal()]++;
+            if (status == Status.ATTENDED) {
+                revenueCents += cents(treatment);
+            }
+        }
+
+        synchronized void add(AppointmentStatistics statistics) {
+            counts[Status.BOOKED.ordinal()] += statistics.booked;
+            counts[Status.ATTENDED.ordinal()] += statistics.attended;
+            counts[Status.CANCELLED.ordinal()] += statistics.cancelled;
+            revenueCents += statistics.revenueCents;
+        }
+
+        synchronized void change(Status from, Status to, Treatment treatment) {
+            if (from == to) {
+                return;
+            }
+            counts[from.ordinal()]--;
+            counts[to.ordinal()]++;
+            if (from == Status.ATTENDED) {
+                revenueCents -= cents(treatment);
+            } else if (to == Status.ATTENDED) {
+                revenueCents += cents(treatment);
+            }
+        }
+
+        synchronized AppointmentStatistics snapshot() {
+            return new AppointmentStatistics(counts[Status.BOOKED.ordinal()], counts[Status.ATTENDED.ordinal()],
+                    counts[Status.CANCELLED.ordinal()], revenueCents);
+        }
+
+        private static long cents(Treatment treatment) {
+            return Math.round(treatment.getCost() * 100);
+        }
+    }
+}
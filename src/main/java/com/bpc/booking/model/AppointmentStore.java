@@ -0,0 +1,176 @@
+package com.bpc.booking.model;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format for the appointments file, used instead of the text format when the file name
+ * ends in {@value #EXTENSION}.
+ * <p>
+ * Header: magic, version, then dictionaries of the patient IDs, physiotherapist IDs and distinct treatments.
+ * It is followed by the record count and one fixed-width record per appointment: patient, physiotherapist
+ * and treatment as int offsets into the dictionaries, the start as int epoch minutes and the status ordinal
+ * as a byte. Patient and physiotherapist details are resolved against the clinic on load, as they are for
+ * the text format.
+ */
+final class AppointmentStore {
+    static final String EXTENSION = ".bin";
+    static final int RECORD_BYTES = 4 + 4 + 4 + 4 + 1;
+    private static final int MAGIC = 0x42504341; // "BPCA"
+    private static final int VERSION = 1;
+
+    private AppointmentStore() {
+    }
+
+    static boolean isBinary(Path file) {
+        return file.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    static void write(List<Appointment> appointments, OutputStream stream) throws IOException {
+        Map<String, Integer> patientRefs = new HashMap<>();
+        Map<String, Integer> physioRefs = new HashMap<>();
+        Map<List<Object>, Integer> treatmentRefs = new HashMap<>();
+        List<Treatment> treatments = new ArrayList<>();
+        int[] records = new int[appointments.size() * 4];
+        byte[] statuses = new byte[appointments.size()];
+        for (int i = 0; i < appointments.size(); i++) {
+            Appointment appointment = appointments.get(i);
+            Treatment treatment = appointment.getTreatment();
+            records[i * 4] = patientRefs.computeIfAbsent(appointment.getPatient().getId(), id -> patientRefs.size());
+            records[i * 4 + 1] = physioRefs.computeIfAbsent(appointment.getPhysiotherapist().getId(), id -> physioRefs.size());
+            records[i * 4 + 2] = treatmentRefs.computeIfAbsent(
+                    Arrays.asList(treatment.getName(), treatment.getExpertise(), treatment.getDuration(), treatment.getCost()),
+                    key -> {
+                        treatments.add(treatment);
+                        return treatments.size() - 1;
+                    });
+            records[i * 4 + 3] = Math.toIntExact(appointment.getStartMinute());
+            statuses[i] = (byte) appointment.getStatus().ordinal();
+        }
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeDictionary(out, patientRefs);
+        writeDictionary(out, physioRefs);
+        out.writeInt(treatments.size());
+        for (Treatment treatment : treatments) {
+            writeString(out, treatment.getName());
+            writeString(out, treatment.getExpertise());
+            out.writeInt(treatment.getDuration());
+            out.writeDouble(treatment.getCost());
+        }
+        out.writeInt(statuses.length);
+        for (int i = 0; i < statuses.length; i++) {
+            out.writeInt(records[i * 4]);
+            out.writeInt(records[i * 4 + 1]);
+            out.writeInt(records[i * 4 + 2]);
+            out.writeInt(records[i * 4 + 3]);
+            out.writeByte(statuses[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads the appointments from the file's bytes, resolving treatments through {@code catalog}. Records
+     * whose patient or physiotherapist is unknown are reported and skipped.
+     */
+    static List<Appointment> read(ByteBuffer in, Map<String, Physiotherapist> physios, Map<String, Patient> patients,
+                                  TreatmentCatalog catalog) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a binary appointments file.");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary appointments file version " + version + ".");
+            }
+            String[] patientIds = readDictionary(in);
+            String[] physioIds = readDictionary(in);
+            Treatment[] treatments = new Treatment[in.getInt()];
+            for (int i = 0; i < treatments.length; i++) {
+                treatments[i] = new Treatment(readString(in), readString(in), in.getInt(), in.getDouble());
+            }
+
+            // Resolve each dictionary entry once rather than once per record
+            Patient[] patientByRef = new Patient[patientIds.length];
+            for (int i = 0; i < patientIds.length; i++) {
+                patientByRef[i] = patients.get(patientIds[i]);
+            }
+            Physiotherapist[] physioByRef = new Physiotherapist[physioIds.length];
+            for (int i = 0; i < physioIds.length; i++) {
+                physioByRef[i] = physios.get(physioIds[i]);
+            }
+
+            Status[] statuses = Status.values();
+            int count = in.getInt();
+            if (count < 0 || (long) count * RECORD_BYTES > in.remaining()) {
+                throw new IOException("Truncated binary appointments file.");
+            }
+            List<Appointment> appointments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int patientRef = in.getInt();
+                int physioRef = in.getInt();
+                Treatment stored = treatments[in.getInt()];
+                LocalDateTime start = LocalDateTime.ofEpochSecond(in.getInt() * 60L, 0, ZoneOffset.UTC);
+                Status status = statuses[in.get()];
+                Patient patient = patientByRef[patientRef];
+                Physiotherapist physio = physioByRef[physioRef];
+                if (patient == null || physio == null) {
+                    System.out.println("Failed to load appointment: patient " + patientIds[patientRef]
+                            + ", physiotherapist " + physioIds[physioRef] + " at " + start);
+                    continue;
+                }
+                Treatment treatment = catalog.resolve(physio, stored.getName(), stored.getExpertise(),
+                        stored.getDuration(), stored.getCost());
+                Appointment appointment = new Appointment(patient, physio, treatment, start);
+                appointment.applyStatus(status);
+                appointments.add(appointment);
+            }
+            return appointments;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt binary appointments file.", e);
+        }
+    }
+
+    private static void writeDictionary(DataOutputStream out, Map<String, Integer> refs) throws IOException {
+        String[] ids = new String[refs.size()];
+        refs.forEach((id, ref) -> ids[ref] = id);
+        out.writeInt(ids.length);
+        for (String id : ids) {
+            writeString(out, id);
+        }
+    }
+
+    private static String[] readDictionary(ByteBuffer in) {
+        String[] ids = new String[in.getInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = readString(in);
+        }
+        return ids;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package com.bpc.booking.model;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Timetable lookup structure: physiotherapist ID -> date -> availability windows sorted by start time.
+ */
+class AvailabilityIndex {
+    private final Map<String, NavigableMap<LocalDate, DayWindows>> windowsByPhysio = new HashMap<>();
+
+    AvailabilityIndex(List<Availability> availabilities) {
+        Map<String, Map<LocalDate, List<Availability>>> grouped = new HashMap<>();
+        for (Availability availability : availabilities) {
+            grouped.computeIfAbsent(availability.getPhysioId(), id -> new HashMap<>())
+                    .computeIfAbsent(availability.getDate(), d -> new ArrayList<>())
+                    .add(availability);
+        }
+        for (Map.Entry<String, Map<LocalDate, List<Availability>>> physioEntry : grouped.entrySet()) {
+            NavigableMap<LocalDate, DayWindows> days = new TreeMap<>();
+            for (Map.Entry<LocalDate, List<Availability>> dayEntry : physioEntry.getValue().entrySet()) {
+                days.put(dayEntry.getKey(), new DayWindows(dayEntry.getValue()));
+            }
+            windowsByPhysio.put(physioEntry.getKey(), days);
+        }
+    }
+
+    /**
+     * Returns true if a single availability window of the physiotherapist on the given date
+     * contains [startMinute, endMinute), both expressed as minutes of the day.
+     */
+    boolean covers(String physioId, LocalDate date, int startMinute, int endMinute) {
+        DayWindows day = day(physioId, date);
+        return day != null && day.covers(startMinute, endMinute);
+    }
+
+    /**
+     * Returns one slot bitmap per availability window of the physiotherapist on the given date,
+     * marking the slots that lie entirely inside the window.
+     */
+    long[][] slotMasks(String physioId, LocalDate date) {
+        DayWindows day = day(physioId, date);
+        return day == null ? new long[0][] : day.slotMasks;
+    }
+
+    List<Availability> windows(String physioId, LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, DayWindows> days = windowsByPhysio.get(physioId);
+        if (days == null) {
+            return Collections.emptyList();
+        }
+        List<Availability> result = new ArrayList<>();
+        for (DayWindows day : days.subMap(from, true, to, true).values()) {
+            result.addAll(day.windows);
+        }
+        return result;
+    }
+
+    private DayWindows day(String physioId, LocalDate date) {
+        NavigableMap<LocalDate, DayWindows> days = windowsByPhysio.get(physioId);
+        return days == null ? null : days.get(date);
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static final class DayWindows {
+        private final List<Availability> windows;
+        private final int[] starts;
+        // maxEnds[i] is the latest end among windows[0..i], so a binary search on the start
+        // answers "does any window starting at or before t reach past e" in one probe
+        private final int[] maxEnds;
+        private final long[][] slotMasks;
+
+        DayWindows(List<Availability> availabilities) {
+            List<Availability> sorted = new ArrayList<>(availabilities);
+            sorted.sort(Comparator.comparing(Availability::getStartTime));
+            this.windows = Collections.unmodifiableList(sorted);
+            this.starts = new int[sorted.size()];
+            this.maxEnds = new int[sorted.size()];
+            this.slotMasks = new long[sorted.size()][];
+            int maxEnd = Integer.MIN_VALUE;
+            for (int i = 0; i < sorted.size(); i++) {
+                starts[i] = minuteOfDay(sorted.get(i).getStartTime());
+                maxEnd = Math.max(maxEnd, minuteOfDay(sorted.get(i).getEndTime()));
+                maxEnds[i] = maxEnd;
+                slotMasks[i] = SlotBitmap.within(starts[i], minuteOfDay(sorted.get(i).getEndTime()));
+            }
+        }
+
+        boolean covers(int startMinute, int endMinute) {
+            int low = 0;
+            int high = starts.length - 1;
+            int last = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] <= startMinute) {
+                    last = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return last >= 0 && maxEnds[last] >= endMinute;
+        }
+    }
+}
@@ -1,23 +1,93 @@
 package com.bpc.booking.model;
 
+import com.bpc.booking.util.CsvReader;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 public class Clinic {
     private List<Physiotherapist> physiotherapists;
     private List<Patient> patients;
-    private List<Appointment> appointments;
+    private volatile List<Appointment> appointments;
+    // Appointments ending before the archive cutoff (epoch minutes), kept in column form instead of the list
+    private final CompactAppointmentStore archive = new CompactAppointmentStore();
+    private volatile long archiveCutoff = Long.MIN_VALUE;
     private List<Availability> availabilities;
+    private final Map<String, Physiotherapist> physiotherapistsById = new ConcurrentHashMap<>();
+    private final Map<String, Patient> patientsById = new ConcurrentHashMap<>();
+    private final TreatmentCatalog treatmentCatalog = new TreatmentCatalog();
+    private final Object patientsLock = new Object();
+    // Keys are normalized with Physiotherapist.normalize; lists keep the registration order
+    private final Map<String, List<Physiotherapist>> physiotherapistsByExpertise = new ConcurrentHashMap<>();
+    private final Map<String, Physiotherapist> physiotherapistsByName = new ConcurrentHashMap<>();
+    private final SurrogateKeys<Physiotherapist> physiotherapistKeys =
+            new SurrogateKeys<>(Physiotherapist::getId, Physiotherapist::getKey, Physiotherapist::setKey);
+    private final SurrogateKeys<Patient> patientKeys = new SurrogateKeys<>(Patient::getId, Patient::getKey, Patient::setKey);
+    // Overlap index and appointment counters per physiotherapist, addressed by surrogate key and updated
+    // under the physiotherapist's lock
+    private final KeyedSlots<PhysioSchedule> schedules = new KeyedSlots<>(PhysioSchedule::new);
+    private final KeyedSlots<AppointmentStatistics.Counters> statistics = new KeyedSlots<>(AppointmentStatistics.Counters::new);
+    // Non-archived appointments by start minute, each minute in the order they were added
+    private final ConcurrentSkipListMap<Long, List<Appointment>> appointmentsByStart = new ConcurrentSkipListMap<>();
+    // Current appointment per slot (see slotKey); a non-cancelled appointment takes precedence over cancelled ones
+    private final Map<Long, Appointment> appointmentsByKey = new ConcurrentHashMap<>();
+    private volatile AvailabilityIndex availabilityIndex;
+    // Bookings, cancellations and status changes for one physiotherapist are serialized on that
+    // physiotherapist's stripe; physiotherapists on different stripes proceed in parallel
+    private final ReentrantLock[] scheduleLocks = new ReentrantLock[32];
+    // Mutations hold the read side while they journal and apply a change; folding the journal into the
+    // base file holds the write side, so the new base file and the reset journal agree
+    private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private volatile AppointmentJournal journal;
+    private int journalCompactionThreshold;
+    private volatile Runnable journalCompactor;
+    private Path appointmentsFile = Paths.get("src/main/resources/data/appointments.txt");
+    // CRC32 of the base appointments file as last loaded or saved
+    private long appointmentsChecksum;
+    // Partitioned storage only: the manifest as last loaded or saved, the stored months that are in memory,
+    // and the months changed since the last save
+    private volatile AppointmentPartitions partitions;
+    private final Set<YearMonth> loadedMonths = ConcurrentHashMap.newKeySet();
+    private final Set<YearMonth> dirtyMonths = ConcurrentHashMap.newKeySet();
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final long SLOT_MINUTE_MASK = (1L << 40) - 1;
 
     public Clinic() {
         this.physiotherapists = new ArrayList<>();
         this.patients = new ArrayList<>();
-        this.appointments = new ArrayList<>();
+        this.appointments = Collections.synchronizedList(new ArrayList<>());
         this.availabilities = new ArrayList<>();
+        this.availabilityIndex = new AvailabilityIndex(availabilities);
+        for (int i = 0; i < scheduleLocks.length; i++) {
+            scheduleLocks[i] = new ReentrantLock();
+        }
     }
 
     public List<Physiotherapist> getPhysiotherapists() {
@@ -26,6 +96,48 @@ public class Clinic {
 
     public void setPhysiotherapists(List<Physiotherapist> physiotherapists) {
         this.physiotherapists = physiotherapists;
+        physiotherapistsById.clear();
+        physiotherapistsById.putAll(indexById(physiotherapists, Physiotherapist::getId));
+        physiotherapistsByExpertise.clear();
+        physiotherapistsByName.clear();
+        for (Physiotherapist physio : physiotherapists) {
+            physiotherapistKeys.keyOf(physio);
+            indexPhysiotherapist(physio);
+        }
+    }
+
+    public void addPhysiotherapist(Physiotherapist physio) {
+        physiotherapists.add(physio);
+        physiotherapistsById.putIfAbsent(physio.getId(), physio);
+        physiotherapistKeys.keyOf(physio);
+        indexPhysiotherapist(physio);
+    }
+
+    /**
+     * Returns the physiotherapist with the given ID, or null if there is none.
+     */
+    public Physiotherapist getPhysiotherapistById(String id) {
+        return physiotherapistsById.get(id);
+    }
+
+    /**
+     * Returns the dense surrogate key of the physiotherapist in this clinic, assigning one if it has none.
+     * Keys are assigned in registration order starting from 0 and are never reused, so they can index arrays
+     * of per-physiotherapist state sized by {@link #getPhysiotherapistKeyCount()}.
+     */
+    public int getPhysiotherapistKey(Physiotherapist physio) {
+        return physiotherapistKeys.keyOf(physio);
+    }
+
+    /**
+     * Returns the physiotherapist with the given surrogate key, or null if the key is not assigned.
+     */
+    public Physiotherapist getPhysiotherapistByKey(int key) {
+        return physiotherapistKeys.get(key);
+    }
+
+    public int getPhysiotherapistKeyCount() {
+        return physiotherapistKeys.size();
     }
 
     public List<Patient> getPatients() {
@@ -33,15 +145,228 @@ public class Clinic {
     }
 
     public void setPatients(List<Patient> patients) {
-        this.patients = patients;
+        synchronized (patientsLock) {
+            this.patients = patients;
+            patientsById.clear();
+            patientsById.putAll(indexById(patients, Patient::getId));
+            for (Patient patient : patients) {
+                patientKeys.keyOf(patient);
+            }
+        }
+    }
+
+    /**
+     * Returns the patient with the given ID, or null if there is none.
+     */
+    public Patient getPatientById(String id) {
+        return patientsById.get(id);
+    }
+
+    /**
+     * Returns the dense surrogate key of the patient in this clinic, assigning one if it has none. A removed
+     * patient keeps its key.
+     */
+    public int getPatientKey(Patient patient) {
+        return patientKeys.keyOf(patient);
     }
 
+    /**
+     * Returns the patient with the given surrogate key, or null if the key is not assigned.
+     */
+    public Patient getPatientByKey(int key) {
+        return patientKeys.get(key);
+    }
+
+    public int getPatientKeyCount() {
+        return patientKeys.size();
+    }
+
+    /**
+     * Returns the synchronized list of appointments that are not archived. Callers iterating it while other
+     * threads may book must hold the list's monitor, as documented by {@link Collections#synchronizedList(List)}.
+     */
     public List<Appointment> getAppointments() {
         return appointments;
     }
 
+    /**
+     * Returns a copy of every appointment: archived ones first, as read-only views, then the others.
+     * With partitioned storage, the stored months that are not in memory yet are paged in first.
+     */
+    public List<Appointment> getAllAppointments() {
+        pageIn(null, null);
+        return copyAppointments();
+    }
+
+    // Copies the appointments in memory; stored months that are not paged in are left out
+    List<Appointment> copyAppointments() {
+        journalLock.readLock().lock();
+        try {
+            List<Appointment> all = archive.toList();
+            synchronized (appointments) {
+                all.addAll(appointments);
+            }
+            return all;
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces all appointments, archived ones included. Appointments of the given list that end before the
+     * archive cutoff are moved out of it into the archive.
+     */
     public void setAppointments(List<Appointment> appointments) {
-        this.appointments = appointments;
+        lockAll();
+        try {
+            // Replaced appointments no longer route status changes here; the new ones are attached by the reindex
+            synchronized (this.appointments) {
+                for (Appointment appointment : this.appointments) {
+                    appointment.setClinic(null);
+                }
+            }
+            archive.clear();
+            archiveEnded(appointments);
+            this.appointments = Collections.synchronizedList(appointments);
+            reindexAppointments();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Moves the appointments that end before {@code cutoff} into compact column storage, and keeps archiving
+     * the ones that end before it when appointments are reloaded or paged in. Archived appointments are still
+     * saved and still returned by {@link #getAppointments(LocalDate, LocalDate)} and {@link #getAllAppointments()},
+     * as read-only views, but they are no longer in {@link #getAppointments()} and cannot be cancelled,
+     * attended or rescheduled. No appointment can be booked before the cutoff afterwards.
+     * Returns the number of appointments archived.
+     */
+    public int archiveAppointmentsBefore(LocalDate cutoff) {
+        long cutoffMinute = Appointment.toEpochMinute(cutoff.atStartOfDay());
+        journalLock.writeLock().lock();
+        lockAll();
+        try {
+            if (cutoffMinute < archiveCutoff) {
+                throw new IllegalArgumentException("Appointments are already archived up to a later date.");
+            }
+            archiveCutoff = cutoffMinute;
+            int archived = archive.size();
+            synchronized (appointments) {
+                archiveEnded(appointments);
+            }
+            reindexAppointments();
+            return archive.size() - archived;
+        } finally {
+            unlockAll();
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the appointment counts and attended revenue of the physiotherapist, archived appointments
+     * included. The counters are maintained as appointments are booked and change status, so this does not
+     * look at the appointments. With partitioned storage, the stored months that are not in memory yet are
+     * added from the statistics the manifest records for them.
+     */
+    public AppointmentStatistics getStatistics(Physiotherapist physio) {
+        pageInMonthsWithoutStatistics();
+        ReentrantLock lock = lockFor(physio);
+        journalLock.readLock().lock();
+        lock.lock();
+        try {
+            AppointmentStatistics.Counters total = new AppointmentStatistics.Counters();
+            total.add(counters(physio).snapshot());
+            forEachStoredMonthStatistics((id, monthStatistics) -> {
+                if (id.equals(physio.getId())) {
+                    total.add(monthStatistics);
+                }
+            });
+            return total.snapshot();
+        } finally {
+            lock.unlock();
+            journalLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the appointment counts and attended revenue of the whole clinic, summed over the
+     * physiotherapists' counters and the manifest's statistics of stored months not in memory.
+     */
+    public AppointmentStatistics getStatistics() {
+        pageInMonthsWithoutStatistics();
+        journalLock.readLock().lock();
+        lockAll();
+        try {
+            AppointmentStatistics.Counters total = new AppointmentStatistics.Counters();
+            statistics.forEach(counters -> total.add(counters.snapshot()));
+            // Paging a month in drops appointments of unknown physiotherapists, and so does this
+            forEachStoredMonthStatistics((id, monthStatistics) -> {
+                if (physiotherapistsById.containsKey(id)) {
+                    total.add(monthStatistics);
+                }
+            });
+            return total.snapshot();
+        } finally {
+            unlockAll();
+            journalLock.readLock().unlock();
+        }
+    }
+
+    // Pages in the stored months whose statistics the manifest does not record, as written by older saves
+    private void pageInMonthsWithoutStatistics() {
+        AppointmentPartitions current = partitions;
+        if (current == null) {
+            return;
+        }
+        for (YearMonth month : current.months(null, null)) {
+            if (!loadedMonths.contains(month) && current.statistics(month) == null) {
+                pageIn(month.atDay(1), month.atEndOfMonth());
+            }
+        }
+    }
+
+    // Feeds the manifest's statistics of the stored months not in memory, by physiotherapist ID. The caller
+    // holds the read side of the journal lock and the stripe locks it counts under, so no month is paged in
+    // or saved meanwhile and none is counted twice.
+    private void forEachStoredMonthStatistics(BiConsumer<String, AppointmentStatistics> action) {
+        AppointmentPartitions current = partitions;
+        if (current == null) {
+            return;
+        }
+        for (YearMonth month : current.months(null, null)) {
+            Map<String, AppointmentStatistics> monthStatistics = current.statistics(month);
+            if (!loadedMonths.contains(month) && monthStatistics != null) {
+                monthStatistics.forEach(action);
+            }
+        }
+    }
+
+    public int getArchivedAppointmentCount() {
+        return archive.size();
+    }
+
+    // Moves the appointments of the list that end before the archive cutoff into the archive
+    private void archiveEnded(List<Appointment> list) {
+        long cutoff = archiveCutoff;
+        if (cutoff == Long.MIN_VALUE) {
+            return;
+        }
+        list.removeIf(appointment -> {
+            if (appointment.getEndMinute() > cutoff) {
+                return false;
+            }
+            archive.add(appointment);
+            appointment.setClinic(null);
+            appointment.setReadOnly(true);
+            return true;
+        });
+    }
+
+    private void requireNotArchived(LocalDateTime start) {
+        if (Appointment.toEpochMinute(start) < archiveCutoff) {
+            throw new IllegalArgumentException("The requested time is in the archived period.");
+        }
     }
 
     public List<Availability> getAvailabilities() {
@@ -50,169 +375,890 @@ public class Clinic {
 
     public void setAvailabilities(List<Availability> availabilities) {
         this.availabilities = availabilities;
+        this.availabilityIndex = new AvailabilityIndex(availabilities);
+    }
+
+    /**
+     * Returns true if one of the physiotherapist's availability windows covers the whole appointment.
+     */
+    public boolean isAvailable(Physiotherapist physio, LocalDateTime start, int durationMinutes) {
+        int startMinute = minuteOfDay(start);
+        return availabilityIndex.covers(physio.getId(), start.toLocalDate(), startMinute, startMinute + durationMinutes);
+    }
+
+    /**
+     * Returns the physiotherapist's availability windows between the two dates (inclusive), sorted by date and time.
+     */
+    public List<Availability> getAvailabilities(Physiotherapist physio, LocalDate from, LocalDate to) {
+        return availabilityIndex.windows(physio.getId(), from, to);
     }
 
     public void addPatient(Patient patient) {
-        patients.add(patient);
+        synchronized (patientsLock) {
+            patients.add(patient);
+            patientsById.putIfAbsent(patient.getId(), patient);
+            patientKeys.keyOf(patient);
+        }
     }
 
     public void removePatient(String patientId) {
-        patients.removeIf(p -> p.getId().equals(patientId));
+        synchronized (patientsLock) {
+            patients.removeIf(p -> p.getId().equals(patientId));
+            patientsById.remove(patientId);
+        }
+    }
+
+    // A consistent copy of the patient list, which a background writer may read while patients are added
+    List<Patient> copyPatients() {
+        synchronized (patientsLock) {
+            return new ArrayList<>(patients);
+        }
     }
 
     public void bookAppointment(Patient patient, Physiotherapist physio, Treatment treatment, String dateTime) {
         LocalDateTime appointmentDateTime = LocalDateTime.parse(dateTime, formatter);
-        LocalDateTime appointmentEnd = appointmentDateTime.plusMinutes(treatment.getDuration());
+        requireNotArchived(appointmentDateTime);
 
         // Check if the physiotherapist has the required expertise
-        if (!physio.getExpertise().contains(treatment.getExpertise())) {
+        if (!physio.hasExpertise(treatment.getExpertise())) {
             throw new IllegalArgumentException("Physiotherapist does not have the required expertise: " + treatment.getExpertise());
         }
 
         // Check availability
-        boolean isAvailable = false;
-        for (Availability availability : availabilities) {
-            if (availability.getPhysioId().equals(physio.getId()) &&
-                    availability.getDate().equals(appointmentDateTime.toLocalDate())) {
-                if (!appointmentDateTime.toLocalTime().isBefore(availability.getStartTime()) &&
-                        !appointmentEnd.toLocalTime().isAfter(availability.getEndTime())) {
-                    isAvailable = true;
-                    break;
-                }
+        if (!isAvailable(physio, appointmentDateTime, treatment.getDuration())) {
+            throw new IllegalArgumentException("Physiotherapist is not available at the requested time.");
+        }
+
+        // The overlap check and the insert must be atomic per physiotherapist
+        pageIn(appointmentDateTime.toLocalDate().minusDays(1), appointmentDateTime.toLocalDate());
+        ReentrantLock lock = lockFor(physio);
+        journalLock.readLock().lock();
+        lock.lock();
+        try {
+            // Check for overlapping appointments (cancelled appointments are not indexed)
+            if (overlaps(physio, appointmentDateTime, treatment.getDuration())) {
+                throw new IllegalArgumentException("Physiotherapist already has an appointment at the requested time.");
             }
+
+            Appointment appointment = new Appointment(patient, physio, treatment, appointmentDateTime);
+            journal(AppointmentJournal.booked(appointment));
+            appointments.add(appointment);
+            count(appointment);
+            indexStart(appointment);
+            index(appointment);
+            changed(appointment);
+        } finally {
+            lock.unlock();
+            journalLock.readLock().unlock();
         }
-        if (!isAvailable) {
-            throw new IllegalArgumentException("Physiotherapist is not available at the requested time.");
+        compactJournalIfDue();
+    }
+
+    /**
+     * Returns true if the physiotherapist has a non-cancelled appointment intersecting the given interval.
+     */
+    public boolean hasOverlap(Physiotherapist physio, LocalDateTime start, int durationMinutes) {
+        pageIn(start.toLocalDate().minusDays(1), start.toLocalDate());
+        return overlaps(physio, start, durationMinutes);
+    }
+
+    private boolean overlaps(Physiotherapist physio, LocalDateTime start, int durationMinutes) {
+        long startMinute = Appointment.toEpochMinute(start);
+        ReentrantLock lock = lockFor(physio);
+        lock.lock();
+        try {
+            return schedule(physio).overlaps(startMinute, startMinute + durationMinutes);
+        } finally {
+            lock.unlock();
         }
+    }
 
-        // Check for overlapping appointments
-        for (Appointment existing : appointments) {
-            if (existing.getPhysiotherapist().equals(physio)) {
-                LocalDateTime existingStart = LocalDateTime.parse(existing.getDateTime(), formatter);
-                LocalDateTime existingEnd = existingStart.plusMinutes(existing.getTreatment().getDuration());
-                if (!(appointmentEnd.isBefore(existingStart) || appointmentDateTime.isAfter(existingEnd))) {
-                    throw new IllegalArgumentException("Physiotherapist already has an appointment at the requested time.");
-                }
+    /**
+     * Returns the earliest start on the given date, at a five-minute granularity and
+     * within [fromMinute, toMinute) minutes of the day, at which a single availability window of the
+     * physiotherapist covers the appointment and no active appointment overlaps it; null if there is none.
+     */
+    public LocalDateTime findEarliestSlot(Physiotherapist physio, LocalDate date, int durationMinutes, int fromMinute, int toMinute) {
+        long[][] windows = availabilityIndex.slotMasks(physio.getId(), date);
+        if (windows.length == 0) {
+            return null;
+        }
+        int slot = earliestSlot(windows, busySlots(physio, date), SlotBitmap.slotsFor(durationMinutes),
+                SlotBitmap.ceilSlot(fromMinute), SlotBitmap.ceilSlot(toMinute));
+        return slot < 0 ? null : date.atStartOfDay().plusMinutes((long) slot * SlotBitmap.SLOT_MINUTES);
+    }
+
+    /**
+     * Returns the free, non-overlapping slots for the treatment that start in [from, to), without modifying
+     * the clinic. Slots are packed back to back, so each one can be booked independently of the others.
+     */
+    public List<LocalDateTime> findFreeSlots(Physiotherapist physio, Treatment treatment, LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> slots = new ArrayList<>();
+        int length = SlotBitmap.slotsFor(treatment.getDuration());
+        for (LocalDate date = from.toLocalDate(); !date.isAfter(to.toLocalDate()); date = date.plusDays(1)) {
+            long[][] windows = availabilityIndex.slotMasks(physio.getId(), date);
+            if (windows.length == 0) {
+                continue;
+            }
+            long[] busy = busySlots(physio, date);
+            int slot = date.equals(from.toLocalDate()) ? SlotBitmap.ceilSlot(minuteOfDay(from)) : 0;
+            int toSlot = date.equals(to.toLocalDate()) ? SlotBitmap.ceilSlot(minuteOfDay(to)) : SlotBitmap.SLOTS_PER_DAY;
+            while ((slot = earliestSlot(windows, busy, length, slot, toSlot)) >= 0) {
+                slots.add(date.atStartOfDay().plusMinutes((long) slot * SlotBitmap.SLOT_MINUTES));
+                slot += length;
+            }
+        }
+        return slots;
+    }
+
+    private long[] busySlots(Physiotherapist physio, LocalDate date) {
+        pageIn(date.minusDays(1), date);
+        long[] busy = SlotBitmap.empty();
+        ReentrantLock lock = lockFor(physio);
+        lock.lock();
+        try {
+            schedule(physio).markBusy(Appointment.toEpochMinute(date.atStartOfDay()), busy);
+        } finally {
+            lock.unlock();
+        }
+        return busy;
+    }
+
+    // Earliest start over all windows of the day; an appointment has to fit inside a single window
+    private static int earliestSlot(long[][] windows, long[] busy, int length, int fromSlot, int toSlot) {
+        int earliest = -1;
+        for (long[] window : windows) {
+            int slot = SlotBitmap.firstRun(window, busy, length, fromSlot, toSlot);
+            if (slot >= 0 && (earliest < 0 || slot < earliest)) {
+                earliest = slot;
+                toSlot = slot;
             }
         }
+        return earliest;
+    }
 
-        Appointment appointment = new Appointment(patient, physio, treatment, dateTime);
-        appointments.add(appointment);
+    private static int minuteOfDay(LocalDateTime dateTime) {
+        return dateTime.getHour() * 60 + dateTime.getMinute();
+    }
+
+    /**
+     * Returns the physiotherapist's appointment at the given date and time, or null if there is none.
+     * If the slot was cancelled and booked again, the new appointment is returned.
+     */
+    public Appointment findAppointment(String dateTime, Physiotherapist physio) {
+        LocalDateTime start = LocalDateTime.parse(dateTime, formatter);
+        pageIn(start.toLocalDate(), start.toLocalDate());
+        return appointmentsByKey.get(slotKey(physio, Appointment.toEpochMinute(start)));
     }
 
     public void cancelAppointment(String dateTime, Physiotherapist physio) {
-        Appointment appointment = appointments.stream()
-                .filter(a -> a.getDateTime().equals(dateTime) && a.getPhysiotherapist().equals(physio))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Appointment not found."));
-        appointment.changeStatus(Status.CANCELLED);
+        requireAppointment(dateTime, physio).changeStatus(Status.CANCELLED);
+    }
+
+    public void markAttended(String dateTime, Physiotherapist physio) {
+        requireAppointment(dateTime, physio).changeStatus(Status.ATTENDED);
+    }
+
+    /**
+     * Moves an appointment to a new date and time in one step: the old appointment is cancelled and a new
+     * one is booked for the same patient and treatment. If the new slot cannot be booked, nothing changes.
+     */
+    public Appointment rescheduleAppointment(String dateTime, Physiotherapist physio, String newDateTime) {
+        LocalDateTime newStart = LocalDateTime.parse(newDateTime, formatter);
+        requireNotArchived(newStart);
+        LocalDate oldDate = LocalDateTime.parse(dateTime, formatter).toLocalDate();
+        pageIn(oldDate, oldDate);
+        pageIn(newStart.toLocalDate().minusDays(1), newStart.toLocalDate());
+        ReentrantLock lock = lockFor(physio);
+        Appointment moved;
+        journalLock.readLock().lock();
+        lock.lock();
+        try {
+            Appointment appointment = requireAppointment(dateTime, physio);
+            Treatment treatment = appointment.getTreatment();
+            if (!isAvailable(physio, newStart, treatment.getDuration())) {
+                throw new IllegalArgumentException("Physiotherapist is not available at the requested time.");
+            }
+
+            // The appointment being moved must not block its own new slot
+            PhysioSchedule schedule = schedule(physio);
+            boolean active = appointment.getStatus() != Status.CANCELLED;
+            if (active) {
+                schedule.remove(appointment);
+            }
+            boolean overlaps = overlaps(physio, newStart, treatment.getDuration());
+            if (active) {
+                schedule.add(appointment);
+            }
+            if (overlaps) {
+                throw new IllegalArgumentException("Physiotherapist already has an appointment at the requested time.");
+            }
+
+            requireNotArchived(appointment.getStart());
+            moved = new Appointment(appointment.getPatient(), physio, treatment, newStart);
+            // Both halves go into one record before either is applied
+            journal(AppointmentJournal.rescheduled(appointment, moved));
+            applyStatusChange(appointment, Status.CANCELLED);
+            appointments.add(moved);
+            count(moved);
+            indexStart(moved);
+            index(moved);
+            changed(moved);
+        } finally {
+            lock.unlock();
+            journalLock.readLock().unlock();
+        }
+        compactJournalIfDue();
+        return moved;
+    }
+
+    private Appointment requireAppointment(String dateTime, Physiotherapist physio) {
+        Appointment appointment = findAppointment(dateTime, physio);
+        if (appointment == null) {
+            throw new IllegalArgumentException("Appointment not found.");
+        }
+        return appointment;
+    }
+
+    /**
+     * Applies a status change to an appointment of this clinic under its physiotherapist's lock,
+     * keeping the overlap index in step with the new status. The appointment must be the current one
+     * for its slot; one that was archived or replaced in the meantime is rejected.
+     */
+    void changeStatus(Appointment appointment, Status status) {
+        ReentrantLock lock = lockFor(appointment.getPhysiotherapist());
+        journalLock.readLock().lock();
+        lock.lock();
+        try {
+            if (appointmentsByKey.get(slotKey(appointment)) != appointment) {
+                throw new IllegalArgumentException("Appointment is no longer part of this clinic.");
+            }
+            requireNotArchived(appointment.getStart());
+            journal(AppointmentJournal.statusChanged(appointment, status));
+            applyStatusChange(appointment, status);
+        } finally {
+            lock.unlock();
+            journalLock.readLock().unlock();
+        }
+        compactJournalIfDue();
+    }
+
+    // Applies a journaled status change in memory; the caller holds the physiotherapist's lock
+    private void applyStatusChange(Appointment appointment, Status status) {
+        Status previous = appointment.getStatus();
+        appointment.applyStatus(status);
+        counters(appointment.getPhysiotherapist()).change(previous, status, appointment.getTreatment());
+        changed(appointment);
+        if (previous == Status.CANCELLED && status != Status.CANCELLED) {
+            index(appointment);
+        } else if (previous != Status.CANCELLED && status == Status.CANCELLED) {
+            schedule(appointment.getPhysiotherapist()).remove(appointment);
+        }
+    }
+
+    // Called before the change is applied, so a failed write leaves the clinic unchanged
+    private void journal(String record) {
+        AppointmentJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.append(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the appointment journal.", e);
+        }
+    }
+
+    private void changed(Appointment appointment) {
+        dirtyMonths.add(YearMonth.from(appointment.getStart()));
+    }
+
+    private void compactJournalIfDue() {
+        AppointmentJournal current = journal;
+        // A caller still holding the read side (a nested change) cannot fold; the next mutation will
+        if (current != null && current.size() >= journalCompactionThreshold && journalLock.getReadHoldCount() == 0) {
+            Runnable compactor = journalCompactor;
+            if (compactor != null) {
+                compactor.run();
+            } else {
+                // The change itself is already journaled; a failed fold is retried by the next mutation
+                try {
+                    saveAppointments();
+                } catch (UncheckedIOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void index(Appointment appointment) {
+        appointment.setClinic(this);
+        appointment.setReadOnly(false);
+        appointmentsByKey.merge(slotKey(appointment), appointment,
+                (existing, candidate) -> existing.getStatus() == Status.CANCELLED ? candidate : existing);
+        if (appointment.getStatus() != Status.CANCELLED) {
+            schedule(appointment.getPhysiotherapist()).add(appointment);
+        }
+    }
+
+    private void reindexAppointments() {
+        schedules.clear();
+        statistics.clear();
+        appointmentsByStart.clear();
+        appointmentsByKey.clear();
+        archive.forEachRow((physio, treatment, status) -> counters(physio).add(status, treatment));
+        synchronized (appointments) {
+            for (Appointment appointment : appointments) {
+                count(appointment);
+                indexStart(appointment);
+                index(appointment);
+            }
+        }
+    }
+
+    // Keeps the first entity for a duplicated ID, matching a findFirst() scan of the list
+    private static <T> Map<String, T> indexById(List<T> entities, Function<T, String> id) {
+        Map<String, T> index = new HashMap<>();
+        for (T entity : entities) {
+            index.putIfAbsent(id.apply(entity), entity);
+        }
+        return index;
+    }
+
+    // Returns the overlap index of the physiotherapist; callers hold its lock
+    private PhysioSchedule schedule(Physiotherapist physio) {
+        return schedules.get(physiotherapistKeys.keyOf(physio));
+    }
+
+    private AppointmentStatistics.Counters counters(Physiotherapist physio) {
+        return statistics.get(physiotherapistKeys.keyOf(physio));
+    }
+
+    // Counts an appointment new to the clinic; its physiotherapist's lock is held or all locks are
+    private void count(Appointment appointment) {
+        counters(appointment.getPhysiotherapist()).add(appointment.getStatus(), appointment.getTreatment());
+    }
+
+    // Adds an appointment new to the appointment list to the date index
+    private void indexStart(Appointment appointment) {
+        appointmentsByStart.computeIfAbsent(appointment.getStartMinute(), minute -> new CopyOnWriteArrayList<>())
+                .add(appointment);
+    }
+
+    private long slotKey(Appointment appointment) {
+        return slotKey(appointment.getPhysiotherapist(), appointment.getStartMinute());
+    }
+
+    // Packs the physiotherapist's surrogate key and the start minute into one long, so slot lookups hash
+    // a number rather than the physiotherapist ID; 40 bits of start minutes span two million years
+    private long slotKey(Physiotherapist physio, long startMinute) {
+        return (long) physiotherapistKeys.keyOf(physio) << 40 | startMinute & SLOT_MINUTE_MASK;
+    }
+
+    // Physiotherapists with consecutive keys fall on different stripes
+    private ReentrantLock lockFor(Physiotherapist physio) {
+        return scheduleLocks[physiotherapistKeys.keyOf(physio) % scheduleLocks.length];
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : scheduleLocks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = scheduleLocks.length - 1; i >= 0; i--) {
+            scheduleLocks[i].unlock();
+        }
     }
 
     public Physiotherapist searchByPhysioName(String name) {
-        return physiotherapists.stream()
-                .filter(p -> p.getName().equalsIgnoreCase(name))
-                .findFirst()
-                .orElse(null);
+        return physiotherapistsByName.get(Physiotherapist.normalize(name));
     }
 
+    /**
+     * Returns the physiotherapists with the given expertise, ignoring case, in registration order.
+     */
     public List<Physiotherapist> searchByExpertise(String expertise) {
-        return physiotherapists.stream()
-                .filter(p -> p.getExpertise().contains(expertise))
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        List<Physiotherapist> physios = physiotherapistsByExpertise.get(Physiotherapist.normalize(expertise));
+        return physios == null ? new ArrayList<>() : new ArrayList<>(physios);
+    }
+
+    void expertiseAdded(Physiotherapist physio, String expertise) {
+        List<Physiotherapist> physios = physiotherapistsByExpertise
+                .computeIfAbsent(Physiotherapist.normalize(expertise), e -> new CopyOnWriteArrayList<>());
+        if (!physios.contains(physio)) {
+            physios.add(physio);
+        }
+    }
+
+    private void indexPhysiotherapist(Physiotherapist physio) {
+        physio.setClinic(this);
+        physiotherapistsByName.putIfAbsent(Physiotherapist.normalize(physio.getName()), physio);
+        for (String expertise : physio.getExpertise()) {
+            expertiseAdded(physio, expertise);
+        }
+    }
+
+    /**
+     * Uses the given file as the base appointments file instead of src/main/resources/data/appointments.txt.
+     * A file name ending in .bin selects the compact binary format, and one ending in .manifest selects storage
+     * partitioned by month. The journal is kept next to the file.
+     */
+    public void setAppointmentsFile(Path appointmentsFile) {
+        journalLock.writeLock().lock();
+        try {
+            this.appointmentsFile = appointmentsFile;
+            partitions = null;
+            loadedMonths.clear();
+            dirtyMonths.clear();
+        } finally {
+            journalLock.writeLock().unlock();
+        }
     }
 
+    /**
+     * Starts journaling every booking and status change to appointments.journal, next to the base file.
+     * Once the journal holds {@code compactionThreshold} records it is folded into a fresh base file.
+     * Call after {@link #loadAppointments()}, which replays any existing journal.
+     */
+    public void openJournal(AppointmentJournal.SyncPolicy policy, int compactionThreshold) throws IOException {
+        closeJournal();
+        this.journalCompactionThreshold = compactionThreshold;
+        this.journal = AppointmentJournal.open(journalFile(), appointmentsChecksum, policy);
+    }
+
+    /**
+     * Runs {@code compactor} instead of {@link #saveAppointments()} when the journal is due to be folded into
+     * the base file, for example to hand the rewrite to a background writer that calls saveAppointments later.
+     * The journal keeps growing, and asking again, until it has been folded.
+     */
+    public void setJournalCompactor(Runnable compactor) {
+        this.journalCompactor = compactor;
+    }
+
+    public void closeJournal() throws IOException {
+        AppointmentJournal current = journal;
+        journal = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private Path journalFile() {
+        return appointmentsFile.resolveSibling("appointments.journal");
+    }
+
+    /**
+     * Writes all appointments to a fresh base file, replacing the old one atomically, and resets the journal.
+     * With partitioned storage only the months changed since they were loaded are rewritten.
+     * Throws {@link UncheckedIOException} if the files cannot be written; the journal is then kept.
+     */
     public void saveAppointments() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("src/main/resources/data/appointments.txt"))) {
-            for (Appointment appointment : appointments) {
-                writer.write(appointment.toString());
-                writer.newLine();
+        journalLock.writeLock().lock();
+        try {
+            // Months that were never paged in are carried forward by savePartitions
+            List<Appointment> snapshot = copyAppointments();
+            if (AppointmentPartitions.isManifest(appointmentsFile)) {
+                appointmentsChecksum = savePartitions(snapshot);
+            } else {
+                appointmentsChecksum = writeAppointments(snapshot, appointmentsFile);
+            }
+            dirtyMonths.clear();
+            if (journal != null) {
+                journal.reset(appointmentsChecksum);
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Could not write the appointments file.", e);
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    // Writes the months that are new to the manifest or changed, then switches the manifest over to them
+    private long savePartitions(List<Appointment> snapshot) throws IOException {
+        AppointmentPartitions previous = partitions != null ? partitions : AppointmentPartitions.read(appointmentsFile, new CRC32());
+        Map<YearMonth, List<Appointment>> byMonth = new TreeMap<>();
+        for (Appointment appointment : snapshot) {
+            byMonth.computeIfAbsent(YearMonth.from(appointment.getStart()), m -> new ArrayList<>()).add(appointment);
+        }
+        AppointmentPartitions next = previous.next();
+        for (YearMonth month : previous.months(null, null)) {
+            if (!byMonth.containsKey(month) || loadedMonths.contains(month) && !dirtyMonths.contains(month)) {
+                next.carryForward(previous, month);
+            }
+        }
+        for (Map.Entry<YearMonth, List<Appointment>> entry : byMonth.entrySet()) {
+            YearMonth month = entry.getKey();
+            if (!next.contains(month)) {
+                writeAppointments(entry.getValue(), next.addPartition(month, entry.getValue()));
+            }
         }
+        long checksum = next.write();
+        partitions = next;
+        loadedMonths.addAll(byMonth.keySet());
+        next.deleteSuperseded(previous);
+        return checksum;
+    }
+
+    // Replaces the file atomically with the appointments in its format; returns the checksum of its content
+    private static long writeAppointments(List<Appointment> list, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            OutputStream checked = new BufferedOutputStream(new CheckedOutputStream(out, checksum), 1 << 16);
+            if (AppointmentStore.isBinary(file)) {
+                AppointmentStore.write(list, checked);
+            } else {
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(checked));
+                for (Appointment appointment : list) {
+                    writer.write(appointment.toString());
+                    writer.newLine();
+                }
+                writer.flush();
+            }
+            out.getFD().sync();
+        }
+        AppointmentJournal.replace(temp, file);
+        return checksum.getValue();
+    }
+
+    /**
+     * Writes a snapshot image of the whole clinic to the given file on a background thread. The state is
+     * captured before this method returns; the future completes once the image has replaced the old file.
+     */
+    public CompletableFuture<Void> saveSnapshot(Path file) {
+        pageIn(null, null);
+        ClinicSnapshot snapshot;
+        journalLock.writeLock().lock();
+        try {
+            snapshot = new ClinicSnapshot(this, appointmentsChecksum);
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                snapshot.write(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write the clinic snapshot.", e);
+            }
+        });
+    }
+
+    /**
+     * Restores a clinic from an image written by {@link #saveSnapshot(Path)}. The restored clinic accepts the
+     * journal written against the same base appointments file as the clinic the snapshot was taken from.
+     */
+    public static Clinic loadSnapshot(Path file) throws IOException {
+        return ClinicSnapshot.read(file);
+    }
+
+    long getArchiveCutoff() {
+        return archiveCutoff;
+    }
+
+    void restoreAppointments(List<Appointment> restored, long checksum, long cutoff) {
+        appointmentsChecksum = checksum;
+        archiveCutoff = cutoff;
+        setAppointments(restored);
+    }
+
+    /**
+     * Loads appointments.txt and replays the journal on top of it, resolving patients and physiotherapists
+     * against the ones registered with this clinic.
+     */
+    public void loadAppointments() {
+        loadAppointments(physiotherapistsById, patientsById);
     }
 
     public void loadAppointments(List<Physiotherapist> physios, List<Patient> patients) {
-        appointments = new ArrayList<>();
-        File file = new File("src/main/resources/data/appointments.txt");
+        loadAppointments(indexById(physios, Physiotherapist::getId), indexById(patients, Patient::getId));
+    }
+
+    /**
+     * Like {@link #loadAppointments()}, but with partitioned storage only the months overlapping [from, to]
+     * and the months the journal refers to are read. Other months are paged in when a booking or query
+     * needs them. With a single appointments file the whole file is read.
+     */
+    public void loadAppointments(LocalDate from, LocalDate to) {
+        loadAppointments(physiotherapistsById, patientsById, from, to);
+    }
+
+    /**
+     * Returns the appointments starting between the two dates (inclusive), paging in stored months as needed.
+     * Archived appointments come first; the others are looked up in the date index and are in start order.
+     */
+    public List<Appointment> getAppointments(LocalDate from, LocalDate to) {
+        pageIn(from, to);
+        long start = Appointment.toEpochMinute(from.atStartOfDay());
+        long end = Appointment.toEpochMinute(to.plusDays(1).atStartOfDay());
+        List<Appointment> result = archive.between(start, end);
+        for (List<Appointment> atMinute : appointmentsByStart.subMap(start, end).values()) {
+            result.addAll(atMinute);
+        }
+        return result;
+    }
+
+    /**
+     * Like {@link #getAppointments(LocalDate, LocalDate)}, but stored months that are not in memory are read
+     * for this call only: their appointments are returned as read-only copies and are not added to the
+     * clinic, so scanning a long period does not leave it in memory. Archived appointments come first; the
+     * others are in start order.
+     */
+    public List<Appointment> scanAppointments(LocalDate from, LocalDate to) {
+        AppointmentPartitions current = partitions;
+        Set<YearMonth> unloaded = new TreeSet<>();
+        if (current != null) {
+            for (YearMonth month : current.months(from, to)) {
+                if (!loadedMonths.contains(month)) {
+                    unloaded.add(month);
+                }
+            }
+        }
+        long start = Appointment.toEpochMinute(from.atStartOfDay());
+        long end = Appointment.toEpochMinute(to.plusDays(1).atStartOfDay());
+        List<Appointment> result = archive.between(start, end);
+        List<Appointment> others = new ArrayList<>();
+        for (List<Appointment> atMinute : appointmentsByStart.subMap(start, end).values()) {
+            others.addAll(atMinute);
+        }
+        if (unloaded.isEmpty()) {
+            result.addAll(others);
+            return result;
+        }
+        // A month paged in by another thread meanwhile is taken from storage only, so nothing is returned twice
+        Predicate<Appointment> inUnloaded = appointment -> unloaded.contains(YearMonth.from(appointment.getStart()));
+        result.removeIf(inUnloaded);
+        others.removeIf(inUnloaded);
+        for (YearMonth month : unloaded) {
+            List<Appointment> stored;
+            try {
+                stored = readAppointments(current.partitionFile(month), new CRC32(), physiotherapistsById, patientsById);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the appointments of " + month + ".", e);
+            }
+            for (Appointment appointment : stored) {
+                if (appointment.getStartMinute() >= start && appointment.getStartMinute() < end) {
+                    appointment.setReadOnly(true);
+                    others.add(appointment);
+                }
+            }
+        }
+        others.sort(Comparator.comparingLong(Appointment::getStartMinute));
+        result.addAll(others);
+        return result;
+    }
+
+    private void loadAppointments(Map<String, Physiotherapist> physios, Map<String, Patient> patients) {
+        loadAppointments(physios, patients, null, null);
+    }
+
+    private void loadAppointments(Map<String, Physiotherapist> physios, Map<String, Patient> patients, LocalDate from, LocalDate to) {
+        List<Appointment> loaded = new ArrayList<>();
+        CRC32 checksum = new CRC32();
+        File file = appointmentsFile.toFile();
+        partitions = null;
+        loadedMonths.clear();
+        dirtyMonths.clear();
+        if (AppointmentPartitions.isManifest(appointmentsFile)) {
+            try {
+                AppointmentPartitions manifest = AppointmentPartitions.read(appointmentsFile, checksum);
+                appointmentsChecksum = checksum.getValue();
+                Set<YearMonth> months = new TreeSet<>(manifest.months(from, to));
+                for (YearMonth month : journalMonths(journalRecords())) {
+                    if (manifest.contains(month)) {
+                        months.add(month);
+                    }
+                }
+                for (YearMonth month : months) {
+                    loaded.addAll(readAppointments(manifest.partitionFile(month), new CRC32(), physios, patients));
+                }
+                loadedMonths.addAll(months);
+                partitions = manifest;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            replayJournal(loaded, physios, patients);
+            setAppointments(loaded);
+            return;
+        }
         if (!file.exists()) {
-            System.out.println("appointments.txt not found. Starting with an empty appointment list.");
+            System.out.println(appointmentsFile.getFileName() + " not found. Starting with an empty appointment list.");
+        } else {
+            try {
+                loaded.addAll(readAppointments(appointmentsFile, checksum, physios, patients));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        appointmentsChecksum = checksum.getValue();
+        replayJournal(loaded, physios, patients);
+        setAppointments(loaded);
+    }
+
+    private List<Appointment> readAppointments(Path file, CRC32 checksum, Map<String, Physiotherapist> physios,
+                                               Map<String, Patient> patients) throws IOException {
+        if (AppointmentStore.isBinary(file)) {
+            byte[] data = Files.readAllBytes(file);
+            checksum.update(data);
+            return AppointmentStore.read(ByteBuffer.wrap(data), physios, patients, treatmentCatalog);
+        }
+        List<Appointment> loaded = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(file, checksum)) {
+            while (reader.next()) {
+                Appointment appointment = parseAppointment(reader, 0, physios, patients);
+                if (appointment != null) {
+                    loaded.add(appointment);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads the stored months overlapping [from, to] that are not in memory yet and adds their appointments.
+     * Null bounds are open.
+     */
+    private void pageIn(LocalDate from, LocalDate to) {
+        AppointmentPartitions current = partitions;
+        if (current == null) {
             return;
         }
+        for (YearMonth month : current.months(from, to)) {
+            while (!loadedMonths.contains(month)) {
+                List<Appointment> paged;
+                try {
+                    paged = readAppointments(current.partitionFile(month), new CRC32(), physiotherapistsById, patientsById);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read the appointments of " + month + ".", e);
+                }
+                // Only the first thread to page the month in adds it; a save in between names a new manifest to read from
+                journalLock.readLock().lock();
+                lockAll();
+                try {
+                    if (partitions == current && loadedMonths.add(month)) {
+                        for (Appointment appointment : paged) {
+                            count(appointment);
+                        }
+                        archiveEnded(paged);
+                        appointments.addAll(paged);
+                        for (Appointment appointment : paged) {
+                            indexStart(appointment);
+                            index(appointment);
+                        }
+                    }
+                } finally {
+                    unlockAll();
+                    journalLock.readLock().unlock();
+                }
+                current = partitions;
+                if (current == null) {
+                    return;
+                }
+            }
+        }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                // Minimum required fields: 12 (without physio phone number), 13 (with physio phone number)
-                if (parts.length >= 12) {
+    private List<String> journalRecords() {
+        try {
+            return AppointmentJournal.readRecords(journalFile(), appointmentsChecksum);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // The months of the appointments the journal records refer to
+    private static Set<YearMonth> journalMonths(List<String> records) {
+        Set<YearMonth> months = new TreeSet<>();
+        if (records == null) {
+            return months;
+        }
+        try (CsvReader reader = CsvReader.of(String.join("\n", records))) {
+            while (reader.next()) {
+                String kind = reader.fieldCount() > 0 ? reader.get(0) : "";
+                // Status changes name one date-time; bookings end with one; moves have both
+                List<Integer> dateTimeIndexes = kind.equals(AppointmentJournal.STATUS) ? List.of(2)
+                        : kind.equals(AppointmentJournal.RESCHEDULED) ? List.of(2, reader.fieldCount() - 3)
+                        : List.of(reader.fieldCount() - 3);
+                for (int dateTimeIndex : dateTimeIndexes) {
                     try {
-                        // Work backward from the end to handle commas in addresses
-                        // Last 3 fields (or 2 if physioPhoneNumber is missing) are fixed: dateTime, status, (physioPhoneNumber)
-                        int statusIndex = parts.length - 2; // Second-to-last field is status
-                        int dateTimeIndex = parts.length - 3; // Third-to-last field is dateTime
-                        int costIndex = parts.length - 4; // Fourth-to-last field is cost
-                        int durationIndex = parts.length - 5; // Fifth-to-last field is duration
-                        int treatmentExpertiseIndex = parts.length - 6; // Sixth-to-last field is treatmentExpertise
-                        int treatmentNameIndex = parts.length - 7; // Seventh-to-last field is treatmentName
-
-                        // Extract the fixed fields at the end
-                        String dateTime = parts[dateTimeIndex].trim();
-                        Status status = Status.valueOf(parts[statusIndex].trim());
-                        String physioPhoneNumber = parts.length == 13 ? parts[parts.length - 1].trim() : "";
-                        double cost = Double.parseDouble(parts[costIndex].trim());
-                        int duration = Integer.parseInt(parts[durationIndex].trim());
-                        String treatmentExpertise = parts[treatmentExpertiseIndex].trim();
-                        String treatmentName = parts[treatmentNameIndex].trim();
-
-                        // Physiotherapist fields (physioId and physioName are fixed, but physioAddress may contain commas)
-                        int physioNameIndex = treatmentNameIndex - 1; // Right before treatmentName
-                        int physioIdIndex = physioNameIndex - 1; // Right before physioName
-                        String physioName = parts[physioNameIndex].trim();
-                        String physioId = parts[physioIdIndex].trim();
-
-                        // Patient fields (patientId and patientName are fixed, patientAddress may contain commas)
-                        int patientPhoneNumberIndex = physioIdIndex - 1; // Right before physioId
-                        String patientPhoneNumber = parts[patientPhoneNumberIndex].trim();
-                        int patientNameIndex = 1; // Second field is patientName
-                        String patientId = parts[0].trim();
-                        String patientName = parts[patientNameIndex].trim();
-
-                        // Reconstruct patientAddress (from after patientName to before patientPhoneNumber)
-                        StringBuilder patientAddressBuilder = new StringBuilder();
-                        for (int i = patientNameIndex + 1; i < patientPhoneNumberIndex; i++) {
-                            patientAddressBuilder.append(parts[i]);
-                            if (i < patientPhoneNumberIndex - 1) {
-                                patientAddressBuilder.append(",");
-                            }
+                        months.add(YearMonth.from(LocalDateTime.parse(reader.get(dateTimeIndex), formatter)));
+                    } catch (RuntimeException e) {
+                        // Reported when the record is replayed
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return months;
+    }
+
+    private void replayJournal(List<Appointment> loaded, Map<String, Physiotherapist> physios, Map<String, Patient> patients) {
+        List<String> records = journalRecords();
+        if (records == null) {
+            return;
+        }
+        // Mirrors appointmentsByKey: a status change applies to the slot's current appointment
+        Map<Long, Appointment> current = new HashMap<>();
+        for (Appointment appointment : loaded) {
+            current.merge(slotKey(appointment), appointment,
+                    (existing, candidate) -> existing.getStatus() == Status.CANCELLED ? candidate : existing);
+        }
+        try (CsvReader reader = CsvReader.of(String.join("\n", records))) {
+            while (reader.next()) {
+                String kind = reader.fieldCount() > 0 ? reader.get(0) : "";
+                if (kind.equals(AppointmentJournal.BOOKED)) {
+                    Appointment appointment = parseAppointment(reader, 1, physios, patients);
+                    if (appointment != null) {
+                        loaded.add(appointment);
+                        current.merge(slotKey(appointment), appointment,
+                                (existing, candidate) -> existing.getStatus() == Status.CANCELLED ? candidate : existing);
+                        changed(appointment);
+                    }
+                    continue;
+                }
+                if (kind.equals(AppointmentJournal.RESCHEDULED)) {
+                    Appointment moved = reader.fieldCount() > 3 ? parseAppointment(reader, 3, physios, patients) : null;
+                    Appointment old = null;
+                    if (moved != null) {
+                        try {
+                            LocalDateTime start = LocalDateTime.parse(reader.get(2), formatter);
+                            Physiotherapist physio = physios.get(reader.get(1));
+                            old = physio == null ? null : current.get(slotKey(physio, Appointment.toEpochMinute(start)));
+                        } catch (RuntimeException e) {
+                            old = null;
                         }
-                        String patientAddress = patientAddressBuilder.toString().trim();
-
-                        // Find patient and physiotherapist
-                        Patient patient = patients.stream()
-                                .filter(p -> p.getId().equals(patientId))
-                                .findFirst()
-                                .orElse(null);
-                        Physiotherapist physio = physios.stream()
-                                .filter(p -> p.getId().equals(physioId))
-                                .findFirst()
-                                .orElse(null);
-
-                        if (patient == null || physio == null) {
-                            System.out.println("Failed to load appointment: " + line);
-                            continue;
+                    }
+                    if (old == null) {
+                        System.out.println("Failed to replay journal record: " + reader.record());
+                        continue;
+                    }
+                    old.applyStatus(Status.CANCELLED);
+                    changed(old);
+                    loaded.add(moved);
+                    current.merge(slotKey(moved), moved,
+                            (existing, candidate) -> existing.getStatus() == Status.CANCELLED ? candidate : existing);
+                    changed(moved);
+                    continue;
+                }
+                Appointment appointment = null;
+                if (kind.equals(AppointmentJournal.STATUS) && reader.fieldCount() == 4) {
+                    try {
+                        LocalDateTime start = LocalDateTime.parse(reader.get(2), formatter);
+                        Physiotherapist physio = physios.get(reader.get(1));
+                        appointment = physio == null ? null : current.get(slotKey(physio, Appointment.toEpochMinute(start)));
+                        if (appointment != null) {
+                            appointment.applyStatus(Status.valueOf(reader.get(3)));
+                            changed(appointment);
                         }
-
-                        Treatment treatment = new Treatment(treatmentName, treatmentExpertise, duration, cost);
-                        Appointment appointment = new Appointment(patient, physio, treatment, dateTime);
-                        appointment.changeStatus(status);
-                        appointments.add(appointment);
-                    } catch (Exception e) {
-                        System.out.println("Failed to load appointment: " + line);
-                        e.printStackTrace(); // Print stack trace for debugging
+                    } catch (RuntimeException e) {
+                        appointment = null;
                     }
-                } else {
-                    System.out.println("Failed to load appointment: " + line);
+                }
+                if (appointment == null) {
+                    System.out.println("Failed to replay journal record: " + reader.record());
                 }
             }
         } catch (IOException e) {
@@ -220,14 +1266,103 @@ public class Clinic {
         }
     }
 
+    // Parses the current record of appointments.txt, whose fields start at field 'first';
+    // returns null (after reporting it) if the record is invalid
+    private Appointment parseAppointment(CsvReader reader, int first, Map<String, Physiotherapist> physios, Map<String, Patient> patients) {
+        int fields = reader.fieldCount() - first;
+        int last = reader.fieldCount();
+        // Minimum required fields: 12 (without physio phone number), 13 (with physio phone number)
+        if (fields >= 12) {
+            try {
+                // Work backward from the end to handle commas in addresses
+                // Last 3 fields (or 2 if physioPhoneNumber is missing) are fixed: dateTime, status, (physioPhoneNumber)
+                int statusIndex = last - 2; // Second-to-last field is status
+                int dateTimeIndex = last - 3; // Third-to-last field is dateTime
+                int costIndex = last - 4; // Fourth-to-last field is cost
+                int durationIndex = last - 5; // Fifth-to-last field is duration
+                int treatmentExpertiseIndex = last - 6; // Sixth-to-last field is treatmentExpertise
+                int treatmentNameIndex = last - 7; // Seventh-to-last field is treatmentName
+
+                // Extract the fixed fields at the end
+                String dateTime = reader.get(dateTimeIndex);
+                Status status = Status.valueOf(reader.get(statusIndex));
+                String physioPhoneNumber = fields == 13 ? reader.get(last - 1) : "";
+                double cost = reader.getDouble(costIndex);
+                int duration = reader.getInt(durationIndex);
+                String treatmentExpertise = reader.get(treatmentExpertiseIndex);
+                String treatmentName = reader.get(treatmentNameIndex);
+
+                // Physiotherapist fields (physioId and physioName are fixed, but physioAddress may contain commas)
+                int physioNameIndex = treatmentNameIndex - 1; // Right before treatmentName
+                int physioIdIndex = physioNameIndex - 1; // Right before physioName
+                String physioName = reader.get(physioNameIndex);
+                String physioId = reader.get(physioIdIndex);
+
+                // Patient fields (patientId and patientName are fixed, patientAddress may contain commas)
+                int patientPhoneNumberIndex = physioIdIndex - 1; // Right before physioId
+                String patientPhoneNumber = reader.get(patientPhoneNumberIndex);
+                int patientNameIndex = first + 1; // Second field is patientName
+                String patientId = reader.get(first);
+                String patientName = reader.get(patientNameIndex);
+
+                // patientAddress spans the fields after patientName up to patientPhoneNumber
+                String patientAddress = reader.span(patientNameIndex + 1, patientPhoneNumberIndex);
+
+                // Find patient and physiotherapist
+                Patient patient = patients.get(patientId);
+                Physiotherapist physio = physios.get(physioId);
+
+                if (patient == null || physio == null) {
+                    System.out.println("Failed to load appointment: " + reader.record());
+                    return null;
+                }
+
+                Treatment treatment = treatmentCatalog.resolve(physio, treatmentName, treatmentExpertise, duration, cost);
+                Appointment appointment = new Appointment(patient, physio, treatment, dateTime);
+                appointment.changeStatus(status);
+                return appointment;
+            } catch (Exception e) {
+                System.out.println("Failed to load appointment: " + reader.record());
+                e.printStackTrace(); // Print stack trace for debugging
+            }
+        } else {
+            System.out.println("Failed to load appointment: " + reader.record());
+        }
+        return null;
+    }
+
+    /**
+     * Writes all patients to a fresh patients.txt, replacing the old one atomically. Throws
+     * {@link UncheckedIOException} if the file cannot be written.
+     */
     public void savePatients() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("src/main/resources/data/patients.txt"))) {
-            for (Patient patient : patients) {
-                writer.write(patient.getId() + "," + patient.getName() + "," + patient.getAddress() + "," + patient.getPhoneNumber());
+        savePatients(Paths.get("src/main/resources/data/patients.txt"));
+    }
+
+    /**
+     * Like {@link #savePatients()}, but writes the given file.
+     */
+    public void savePatients(Path file) {
+        try {
+            writePatients(copyPatients(), file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the patients file.", e);
+        }
+    }
+
+    // Replaces the file atomically with the patients, one record per line
+    private static void writePatients(List<Patient> list, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out));
+            for (Patient patient : list) {
+                writer.write(CsvReader.field(patient.getId()) + "," + CsvReader.field(patient.getName()) + ","
+                        + CsvReader.field(patient.getAddress()) + "," + CsvReader.field(patient.getPhoneNumber()));
                 writer.newLine();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            writer.flush();
+            out.getFD().sync();
         }
+        AppointmentJournal.replace(temp, file);
     }
 }
\ No newline at end of file
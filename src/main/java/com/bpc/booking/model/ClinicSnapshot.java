@@ -0,0 +1,255 @@
+package com.bpc.booking.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary image of the complete clinic state, used to restart without re-parsing the text files.
+ * <p>
+ * Layout, all through {@link DataOutputStream}: magic, version, checksum of the base appointments file,
+ * archive cutoff in epoch minutes, then the physiotherapists (with expertise and treatments), patients, availabilities and appointments.
+ * Availabilities and appointments refer to physiotherapists, patients and treatments by their offset in
+ * the preceding tables; an offset of -1 is followed by the referenced entity written inline, for
+ * appointments of removed patients or treatments that are no longer offered.
+ */
+final class ClinicSnapshot {
+    private static final int MAGIC = 0x42504353; // "BPCS"
+    private static final int VERSION = 2;
+
+    private final long appointmentsChecksum;
+    private final long archiveCutoff;
+    private final List<Physiotherapist> physiotherapists;
+    private final List<List<String>> expertise = new ArrayList<>();
+    private final List<List<Treatment>> treatments = new ArrayList<>();
+    private final List<Patient> patients;
+    private final List<Availability> availabilities;
+    private final List<Appointment> appointments;
+    private final Status[] statuses;
+
+    /**
+     * Copies the mutable parts of the clinic's state; the caller must keep the clinic from changing meanwhile
+     * and must have paged in all stored months.
+     */
+    ClinicSnapshot(Clinic clinic, long appointmentsChecksum) {
+        this.appointmentsChecksum = appointmentsChecksum;
+        this.archiveCutoff = clinic.getArchiveCutoff();
+        this.physiotherapists = new ArrayList<>(clinic.getPhysiotherapists());
+        for (Physiotherapist physio : physiotherapists) {
+            expertise.add(new ArrayList<>(physio.getExpertise()));
+            treatments.add(new ArrayList<>(physio.getTreatments()));
+        }
+        this.patients = clinic.copyPatients();
+        this.availabilities = new ArrayList<>(clinic.getAvailabilities());
+        this.appointments = clinic.copyAppointments();
+        this.statuses = new Status[appointments.size()];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = appointments.get(i).getStatus();
+        }
+    }
+
+    /**
+     * Writes the image to a temp file next to {@code file} and renames it into place.
+     */
+    void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(appointmentsChecksum);
+            out.writeLong(archiveCutoff);
+
+            Map<Physiotherapist, Integer> physioRefs = new IdentityHashMap<>();
+            Map<String, Integer> physioIdRefs = new HashMap<>();
+            out.writeInt(physiotherapists.size());
+            for (int i = 0; i < physiotherapists.size(); i++) {
+                Physiotherapist physio = physiotherapists.get(i);
+                physioRefs.put(physio, i);
+                physioIdRefs.putIfAbsent(physio.getId(), i);
+                writePerson(out, physio.getId(), physio.getName(), physio.getAddress(), physio.getPhoneNumber());
+                out.writeInt(expertise.get(i).size());
+                for (String e : expertise.get(i)) {
+                    out.writeUTF(e);
+                }
+                out.writeInt(treatments.get(i).size());
+                for (Treatment treatment : treatments.get(i)) {
+                    writeTreatment(out, treatment);
+                }
+            }
+
+            Map<Patient, Integer> patientRefs = new IdentityHashMap<>();
+            out.writeInt(patients.size());
+            for (int i = 0; i < patients.size(); i++) {
+                Patient patient = patients.get(i);
+                patientRefs.put(patient, i);
+                writePerson(out, patient.getId(), patient.getName(), patient.getAddress(), patient.getPhoneNumber());
+            }
+
+            out.writeInt(availabilities.size());
+            for (Availability availability : availabilities) {
+                Integer ref = physioIdRefs.get(availability.getPhysioId());
+                out.writeInt(ref == null ? -1 : ref);
+                if (ref == null) {
+                    out.writeUTF(availability.getPhysioId());
+                }
+                out.writeLong(availability.getDate().toEpochDay());
+                out.writeInt(availability.getStartTime().toSecondOfDay());
+                out.writeInt(availability.getEndTime().toSecondOfDay());
+            }
+
+            out.writeInt(appointments.size());
+            for (int i = 0; i < appointments.size(); i++) {
+                Appointment appointment = appointments.get(i);
+                Integer patientRef = patientRefs.get(appointment.getPatient());
+                out.writeInt(patientRef == null ? -1 : patientRef);
+                if (patientRef == null) {
+                    Patient patient = appointment.getPatient();
+                    writePerson(out, patient.getId(), patient.getName(), patient.getAddress(), patient.getPhoneNumber());
+                }
+                Physiotherapist physio = appointment.getPhysiotherapist();
+                Integer physioRef = physioRefs.get(physio);
+                out.writeInt(physioRef == null ? -1 : physioRef);
+                if (physioRef == null) {
+                    writePerson(out, physio.getId(), physio.getName(), physio.getAddress(), physio.getPhoneNumber());
+                }
+                int treatmentRef = physioRef == null ? -1 : treatmentRef(treatments.get(physioRef), appointment.getTreatment());
+                out.writeInt(treatmentRef);
+                if (treatmentRef < 0) {
+                    writeTreatment(out, appointment.getTreatment());
+                }
+                out.writeLong(appointment.getStartMinute());
+                out.writeByte(statuses[i].ordinal());
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        AppointmentJournal.replace(temp, file);
+    }
+
+    /**
+     * Reads an image written by {@link #write(Path)} into a new clinic in one sequential pass.
+     */
+    static Clinic read(Path file) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a clinic snapshot: " + file);
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported clinic snapshot version " + version + ": " + file);
+        }
+        long appointmentsChecksum = in.readLong();
+        long archiveCutoff = in.readLong();
+
+        List<Physiotherapist> physios = new ArrayList<>();
+        int physioCount = in.readInt();
+        for (int i = 0; i < physioCount; i++) {
+            Physiotherapist physio = new Physiotherapist(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+            int expertiseCount = in.readInt();
+            for (int j = 0; j < expertiseCount; j++) {
+                physio.addExpertise(in.readUTF());
+            }
+            int treatmentCount = in.readInt();
+            for (int j = 0; j < treatmentCount; j++) {
+                physio.addTreatment(readTreatment(in));
+            }
+            physios.add(physio);
+        }
+
+        List<Patient> patients = new ArrayList<>();
+        int patientCount = in.readInt();
+        for (int i = 0; i < patientCount; i++) {
+            patients.add(readPatient(in));
+        }
+
+        List<Availability> availabilities = new ArrayList<>();
+        int availabilityCount = in.readInt();
+        for (int i = 0; i < availabilityCount; i++) {
+            int physioRef = in.readInt();
+            String physioId = physioRef < 0 ? in.readUTF() : physios.get(physioRef).getId();
+            LocalDate date = LocalDate.ofEpochDay(in.readLong());
+            LocalTime startTime = LocalTime.ofSecondOfDay(in.readInt());
+            LocalTime endTime = LocalTime.ofSecondOfDay(in.readInt());
+            availabilities.add(new Availability(physioId, date, startTime, endTime));
+        }
+
+        Status[] statuses = Status.values();
+        List<Appointment> appointments = new ArrayList<>();
+        int appointmentCount = in.readInt();
+        for (int i = 0; i < appointmentCount; i++) {
+            int patientRef = in.readInt();
+            Patient patient = patientRef < 0 ? readPatient(in) : patients.get(patientRef);
+            int physioRef = in.readInt();
+            Physiotherapist physio = physioRef < 0
+                    ? new Physiotherapist(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF())
+                    : physios.get(physioRef);
+            int treatmentRef = in.readInt();
+            Treatment treatment = treatmentRef < 0 ? readTreatment(in) : physio.getTreatments().get(treatmentRef);
+            LocalDateTime start = LocalDateTime.ofEpochSecond(in.readLong() * 60, 0, ZoneOffset.UTC);
+            Appointment appointment = new Appointment(patient, physio, treatment, start);
+            appointment.applyStatus(statuses[in.readByte()]);
+            appointments.add(appointment);
+        }
+
+        Clinic clinic = new Clinic();
+        clinic.setPhysiotherapists(physios);
+        clinic.setPatients(patients);
+        clinic.setAvailabilities(availabilities);
+        clinic.restoreAppointments(appointments, appointmentsChecksum, archiveCutoff);
+        return clinic;
+    }
+
+    // Appointments loaded from text carry their own Treatment copies, so fall back to matching by value
+    private static int treatmentRef(List<Treatment> offered, Treatment treatment) {
+        for (int i = 0; i < offered.size(); i++) {
+            if (offered.get(i) == treatment) {
+                return i;
+            }
+        }
+        for (int i = 0; i < offered.size(); i++) {
+            Treatment candidate = offered.get(i);
+            if (candidate.getName().equals(treatment.getName()) && candidate.getExpertise().equals(treatment.getExpertise())
+                    && candidate.getDuration() == treatment.getDuration() && candidate.getCost() == treatment.getCost()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void writePerson(DataOutputStream out, String id, String name, String address, String phoneNumber) throws IOException {
+        out.writeUTF(id);
+        out.writeUTF(name);
+        out.writeUTF(address);
+        out.writeUTF(phoneNumber);
+    }
+
+    private static Patient readPatient(DataInputStream in) throws IOException {
+        return new Patient(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+    }
+
+    private static void writeTreatment(DataOutputStream out, Treatment treatment) throws IOException {
+        out.writeUTF(treatment.getName());
+        out.writeUTF(treatment.getExpertise());
+        out.writeInt(treatment.getDuration());
+        out.writeDouble(treatment.getCost());
+    }
+
+    private static Treatment readTreatment(DataInputStream in) throws IOException {
+        return new Treatment(in.readUTF(), in.readUTF(), in.readInt(), in.readDouble());
+    }
+}
@@ -0,0 +1,186 @@
+package com.bpc.booking.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented store for archived appointments. Each appointment takes one slot in five primitive
+ * columns: patient, physiotherapist and treatment as int offsets into tables of the distinct instances,
+ * the start as int epoch minutes and the status ordinal as a byte. Columns grow in fixed-size chunks, so
+ * adding never copies the stored data, and a million appointments are a few dozen arrays instead of
+ * millions of objects.
+ * <p>
+ * Appointment objects are only created when a caller asks for them. They are detached, read-only views.
+ * <p>
+ * Range queries use a start index: one long per row holding the start minute in the high half and the row
+ * in the low half, sorted, so a range is found by binary search. Rows are archived in batches, so the index
+ * is rebuilt on the first query after a batch rather than on every add.
+ */
+final class CompactAppointmentStore {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final Status[] STATUSES = Status.values();
+
+    private final Table<Patient> patients = new Table<>();
+    private final Table<Physiotherapist> physiotherapists = new Table<>();
+    private final Table<Treatment> treatments = new Table<>();
+    private int[][] patientColumn = new int[0][];
+    private int[][] physioColumn = new int[0][];
+    private int[][] treatmentColumn = new int[0][];
+    private int[][] startColumn = new int[0][];
+    private byte[][] statusColumn = new byte[0][];
+    private int size;
+    private long[] byStart = new long[0];
+
+    synchronized void add(Appointment appointment) {
+        int chunk = size >>> CHUNK_BITS;
+        if (chunk == startColumn.length) {
+            patientColumn = grow(patientColumn);
+            physioColumn = grow(physioColumn);
+            treatmentColumn = grow(treatmentColumn);
+            startColumn = grow(startColumn);
+            statusColumn = Arrays.copyOf(statusColumn, chunk + 1);
+            statusColumn[chunk] = new byte[CHUNK_SIZE];
+        }
+        int offset = size & CHUNK_MASK;
+        patientColumn[chunk][offset] = patients.ref(appointment.getPatient());
+        physioColumn[chunk][offset] = physiotherapists.ref(appointment.getPhysiotherapist());
+        treatmentColumn[chunk][offset] = treatments.ref(appointment.getTreatment());
+        startColumn[chunk][offset] = Math.toIntExact(appointment.getStartMinute());
+        statusColumn[chunk][offset] = (byte) appointment.getStatus().ordinal();
+        size++;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized void clear() {
+        patients.clear();
+        physiotherapists.clear();
+        treatments.clear();
+        patientColumn = new int[0][];
+        physioColumn = new int[0][];
+        treatmentColumn = new int[0][];
+        startColumn = new int[0][];
+        statusColumn = new byte[0][];
+        size = 0;
+        byStart = new long[0];
+    }
+
+    /**
+     * Returns views of all stored appointments, in the order they were added.
+     */
+    synchronized List<Appointment> toList() {
+        List<Appointment> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(view(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns views of the stored appointments starting in the half-open interval [from, to) of epoch
+     * minutes, in start order. The range is located in the start index; views are created for the matches alone.
+     */
+    synchronized List<Appointment> between(long from, long to) {
+        List<Appointment> result = new ArrayList<>();
+        if (from >= to) {
+            return result;
+        }
+        long[] index = startIndex();
+        for (int i = firstAtOrAfter(index, from); i < index.length && (index[i] >> 32) < to; i++) {
+            result.add(view((int) index[i]));
+        }
+        return result;
+    }
+
+    private long[] startIndex() {
+        if (byStart.length != size) {
+            long[] index = new long[size];
+            for (int i = 0; i < size; i++) {
+                index[i] = (long) startColumn[i >>> CHUNK_BITS][i & CHUNK_MASK] << 32 | i;
+            }
+            Arrays.sort(index);
+            byStart = index;
+        }
+        return byStart;
+    }
+
+    // Position of the first entry whose start minute is at least 'minute'
+    private static int firstAtOrAfter(long[] index, long minute) {
+        int low = 0;
+        int high = index.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if ((index[mid] >> 32) < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Passes the physiotherapist, treatment and status of every stored appointment to {@code visitor},
+     * without creating appointment views.
+     */
+    synchronized void forEachRow(RowVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            int chunk = i >>> CHUNK_BITS;
+            int offset = i & CHUNK_MASK;
+            visitor.visit(physiotherapists.get(physioColumn[chunk][offset]), treatments.get(treatmentColumn[chunk][offset]),
+                    STATUSES[statusColumn[chunk][offset]]);
+        }
+    }
+
+    interface RowVisitor {
+        void visit(Physiotherapist physio, Treatment treatment, Status status);
+    }
+
+    private Appointment view(int i) {
+        int chunk = i >>> CHUNK_BITS;
+        int offset = i & CHUNK_MASK;
+        LocalDateTime start = LocalDateTime.ofEpochSecond(startColumn[chunk][offset] * 60L, 0, ZoneOffset.UTC);
+        Appointment appointment = new Appointment(patients.get(patientColumn[chunk][offset]),
+                physiotherapists.get(physioColumn[chunk][offset]), treatments.get(treatmentColumn[chunk][offset]), start);
+        appointment.applyStatus(STATUSES[statusColumn[chunk][offset]]);
+        appointment.setReadOnly(true);
+        return appointment;
+    }
+
+    private static int[][] grow(int[][] column) {
+        int[][] grown = Arrays.copyOf(column, column.length + 1);
+        grown[column.length] = new int[CHUNK_SIZE];
+        return grown;
+    }
+
+    // Distinct instances by identity, so a reference costs one int per appointment
+    private static final class Table<T> {
+        private final List<T> values = new ArrayList<>();
+        private final Map<T, Integer> refs = new IdentityHashMap<>();
+
+        int ref(T value) {
+            return refs.computeIfAbsent(value, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        T get(int ref) {
+            return values.get(ref);
+        }
+
+        void clear() {
+            values.clear();
+            refs.clear();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.bpc.booking.model;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Per-entity state addressed by surrogate key: slot k holds the state of the entity with key k, created on
+ * first use. Reading an existing slot takes no lock; creating one synchronizes on this object.
+ */
+final class KeyedSlots<T> {
+    private final Supplier<T> factory;
+    // Republished after every write, so a reader that sees a slot also sees its state
+    private volatile Object[] slots = new Object[0];
+
+    KeyedSlots(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int key) {
+        Object[] current = slots;
+        Object slot = key < current.length ? current[key] : null;
+        if (slot != null) {
+            return (T) slot;
+        }
+        synchronized (this) {
+            current = slots;
+            if (key >= current.length) {
+                current = Arrays.copyOf(current, Math.max(key + 1, current.length * 2));
+            }
+            if (current[key] == null) {
+                current[key] = factory.get();
+            }
+            slots = current;
+            return (T) current[key];
+        }
+    }
+
+    /**
+     * Visits the state of every slot created so far.
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(Consumer<T> action) {
+        for (Object slot : slots) {
+            if (slot != null) {
+                action.accept((T) slot);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        slots = new Object[0];
+    }
+}
@@ -7,6 +7,8 @@ public class Patient {
     private final String name;
     private final String address;
     private final String phoneNumber;
+    // Surrogate key cached by the clinic's SurrogateKeys; -1 until registered
+    private int key = -1;
 
     public Patient(String id, String name, String address, String phoneNumber) {
         this.id = id;
@@ -19,6 +21,14 @@ public class Patient {
         return id;
     }
 
+    int getKey() {
+        return key;
+    }
+
+    void setKey(int key) {
+        this.key = key;
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,48 @@
+package com.bpc.booking.model;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Sorted interval index of the active (non-cancelled) appointments of one physiotherapist,
+ * keyed on the appointment start expressed in epoch minutes.
+ */
+class PhysioSchedule {
+    private final NavigableMap<Long, Appointment> appointmentsByStart = new TreeMap<>();
+    private long maxDuration;
+
+    void add(Appointment appointment) {
+        appointmentsByStart.put(appointment.getStartMinute(), appointment);
+        maxDuration = Math.max(maxDuration, appointment.getTreatment().getDuration());
+    }
+
+    void remove(Appointment appointment) {
+        // Compare by identity: another appointment for the same slot is equal but must stay indexed
+        if (appointmentsByStart.get(appointment.getStartMinute()) == appointment) {
+            appointmentsByStart.remove(appointment.getStartMinute());
+        }
+    }
+
+    /**
+     * Marks in {@code bits} every slot of the day starting at {@code dayStart} that an indexed appointment touches.
+     */
+    void markBusy(long dayStart, long[] bits) {
+        for (Appointment appointment : appointmentsByStart.subMap(dayStart - maxDuration, false, dayStart + 24 * 60, false).values()) {
+            SlotBitmap.markTouched(bits, appointment.getStartMinute() - dayStart, appointment.getEndMinute() - dayStart);
+        }
+    }
+
+    /**
+     * Returns true if any indexed appointment intersects the half-open interval [start, end).
+     * Only appointments starting within the longest indexed duration before {@code start}
+     * can reach into the interval, so the scan is bounded to that sub-range.
+     */
+    boolean overlaps(long start, long end) {
+        for (Appointment appointment : appointmentsByStart.subMap(start - maxDuration, false, end, false).values()) {
+            if (appointment.getEndMinute() > start) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
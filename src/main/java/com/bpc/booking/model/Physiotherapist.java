@@ -1,8 +1,13 @@
 package com.bpc.booking.model;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 public class Physiotherapist {
     private final String id;
@@ -10,7 +15,12 @@ public class Physiotherapist {
     private final String address;
     private final String phoneNumber;
     private final List<String> expertise;
+    private final Set<String> normalizedExpertise;
     private final List<Treatment> treatments;
+    private final Map<String, Treatment> treatmentsByName;
+    private volatile Clinic clinic;
+    // Surrogate key cached by the clinic's SurrogateKeys; -1 until registered
+    private int key = -1;
 
     public Physiotherapist(String id, String name, String address, String phoneNumber) {
         this.id = id;
@@ -18,13 +28,23 @@ public class Physiotherapist {
         this.address = address;
         this.phoneNumber = phoneNumber;
         this.expertise = new ArrayList<>();
+        this.normalizedExpertise = new HashSet<>();
         this.treatments = new ArrayList<>();
+        this.treatmentsByName = new HashMap<>();
     }
 
     public String getId() {
         return id;
     }
 
+    int getKey() {
+        return key;
+    }
+
+    void setKey(int key) {
+        this.key = key;
+    }
+
     public String getName() {
         return name;
     }
@@ -43,6 +63,25 @@ public class Physiotherapist {
 
     public void addExpertise(String expertise) {
         this.expertise.add(expertise);
+        this.normalizedExpertise.add(normalize(expertise));
+        if (clinic != null) {
+            clinic.expertiseAdded(this, expertise);
+        }
+    }
+
+    /**
+     * Returns true if the physiotherapist has the expertise, ignoring case and surrounding whitespace.
+     */
+    public boolean hasExpertise(String expertise) {
+        return normalizedExpertise.contains(normalize(expertise));
+    }
+
+    void setClinic(Clinic clinic) {
+        this.clinic = clinic;
+    }
+
+    static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
     }
 
     public List<Treatment> getTreatments() {
@@ -51,6 +90,14 @@ public class Physiotherapist {
 
     public void addTreatment(Treatment treatment) {
         this.treatments.add(treatment);
+        this.treatmentsByName.putIfAbsent(treatment.getName(), treatment);
+    }
+
+    /**
+     * Returns the offered treatment with the given name, or null if there is none.
+     */
+    public Treatment findTreatment(String name) {
+        return treatmentsByName.get(name);
     }
 
     @Override
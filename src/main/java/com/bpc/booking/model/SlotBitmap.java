@@ -0,0 +1,98 @@
+package com.bpc.booking.model;
+
+/**
+ * Bit operations over one day of fixed-size slots, packed into a {@code long[]}.
+ * Bit {@code i} stands for the slot starting {@code i * SLOT_MINUTES} minutes after midnight.
+ */
+final class SlotBitmap {
+    static final int SLOT_MINUTES = 5;
+    static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    static final int WORDS_PER_DAY = (SLOTS_PER_DAY + 63) / 64;
+
+    private SlotBitmap() {
+    }
+
+    static long[] empty() {
+        return new long[WORDS_PER_DAY];
+    }
+
+    /**
+     * Returns a bitmap of the slots lying entirely inside [startMinute, endMinute) of the day.
+     */
+    static long[] within(int startMinute, int endMinute) {
+        long[] bits = empty();
+        set(bits, ceilSlot(startMinute), Math.min(endMinute / SLOT_MINUTES, SLOTS_PER_DAY));
+        return bits;
+    }
+
+    /**
+     * Sets the slots touched by [startMinute, endMinute) of the day, clamped to the day.
+     */
+    static void markTouched(long[] bits, long startMinute, long endMinute) {
+        int from = (int) Math.max(0, Math.floorDiv(startMinute, SLOT_MINUTES));
+        int to = (int) Math.min(SLOTS_PER_DAY, Math.floorDiv(endMinute + SLOT_MINUTES - 1, SLOT_MINUTES));
+        set(bits, from, to);
+    }
+
+    /**
+     * Returns the first slot {@code i} in [fromSlot, toSlot) such that the {@code length} slots starting
+     * at {@code i} are all set in {@code free} and not set in {@code busy}, or -1 if there is none.
+     */
+    static int firstRun(long[] free, long[] busy, int length, int fromSlot, int toSlot) {
+        long[] runs = new long[WORDS_PER_DAY];
+        for (int w = 0; w < runs.length; w++) {
+            runs[w] = free[w] & ~busy[w];
+        }
+        // Doubling: after each step bit i is set iff the next 'covered' slots from i are all free
+        int covered = 1;
+        while (covered < length) {
+            int shift = Math.min(covered, length - covered);
+            andShifted(runs, shift);
+            covered += shift;
+        }
+        int from = Math.max(fromSlot, 0);
+        int to = Math.min(toSlot, SLOTS_PER_DAY);
+        for (int w = from >>> 6; w << 6 < to; w++) {
+            long word = runs[w];
+            if (w == from >>> 6) {
+                word &= -1L << (from & 63);
+            }
+            if (word != 0) {
+                int slot = (w << 6) + Long.numberOfTrailingZeros(word);
+                return slot < to ? slot : -1;
+            }
+        }
+        return -1;
+    }
+
+    static int ceilSlot(int minute) {
+        return (minute + SLOT_MINUTES - 1) / SLOT_MINUTES;
+    }
+
+    static int slotsFor(int minutes) {
+        return Math.max(1, ceilSlot(minutes));
+    }
+
+    private static void set(long[] bits, int from, int to) {
+        for (int i = from; i < to; i++) {
+            bits[i >>> 6] |= 1L << (i & 63);
+        }
+    }
+
+    // bits[i] &= bits[i + shift] across word boundaries; bits past the end count as clear
+    private static void andShifted(long[] bits, int shift) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        for (int w = 0; w < bits.length; w++) {
+            int source = w + wordShift;
+            long shifted = 0;
+            if (source < bits.length) {
+                shifted = bits[source] >>> bitShift;
+                if (bitShift != 0 && source + 1 < bits.length) {
+                    shifted |= bits[source + 1] << (64 - bitShift);
+                }
+            }
+            bits[w] &= shifted;
+        }
+    }
+}
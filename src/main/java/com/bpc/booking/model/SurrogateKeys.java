@@ -0,0 +1,79 @@
+package com.bpc.booking.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Dense int surrogate keys for entities identified by a string ID, so that per-entity state can live in
+ * arrays indexed by key. Keys are assigned 0, 1, 2, ... in registration order, and entities with the same ID
+ * share a key, as they are equal.
+ * <p>
+ * The key is cached on the entity. A lookup checks the cached key against the registered entity, normally
+ * by identity, so it costs an array probe instead of a string hash. An entity registered with another clinic
+ * fails the check and is registered here.
+ */
+final class SurrogateKeys<T> {
+    private final Function<T, String> id;
+    private final ToIntFunction<T> cachedKey;
+    private final ObjIntConsumer<T> cacheKey;
+    private final Map<String, Integer> keysById = new HashMap<>();
+    // Republished after every write, so a reader that sees an entry also sees the entity
+    private volatile Object[] entities = new Object[16];
+    private volatile int size;
+
+    SurrogateKeys(Function<T, String> id, ToIntFunction<T> cachedKey, ObjIntConsumer<T> cacheKey) {
+        this.id = id;
+        this.cachedKey = cachedKey;
+        this.cacheKey = cacheKey;
+    }
+
+    /**
+     * Returns the key of the entity, registering it if its ID has none yet.
+     */
+    int keyOf(T entity) {
+        int key = cachedKey.applyAsInt(entity);
+        Object[] current = entities;
+        if (key >= 0 && key < current.length) {
+            @SuppressWarnings("unchecked")
+            T registered = (T) current[key];
+            if (registered == entity || registered != null && id.apply(registered).equals(id.apply(entity))) {
+                return key;
+            }
+        }
+        return register(entity);
+    }
+
+    /**
+     * Returns the first entity registered under the key, or null if the key is not assigned.
+     */
+    @SuppressWarnings("unchecked")
+    T get(int key) {
+        Object[] current = entities;
+        return key >= 0 && key < current.length ? (T) current[key] : null;
+    }
+
+    /**
+     * Returns the number of keys assigned; every key is below it.
+     */
+    int size() {
+        return size;
+    }
+
+    private synchronized int register(T entity) {
+        Integer key = keysById.get(id.apply(entity));
+        if (key == null) {
+            key = size;
+            Object[] grown = key < entities.length ? entities : Arrays.copyOf(entities, entities.length * 2);
+            grown[key] = entity;
+            entities = grown;
+            keysById.put(id.apply(entity), key);
+            size = key + 1;
+        }
+        cacheKey.accept(entity, key);
+        return key;
+    }
+}
@@ -0,0 +1,28 @@
+package com.bpc.booking.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the treatment fields of stored appointments to shared Treatment instances, so that loading a
+ * long history does not create one Treatment per appointment.
+ * <p>
+ * A treatment the physiotherapist still offers, with the same expertise, duration and cost, resolves to
+ * the physiotherapist's own instance. Anything else, such as a treatment that is no longer offered or
+ * whose price has changed since, resolves to one instance per distinct value kept by the catalog.
+ */
+final class TreatmentCatalog {
+    private final Map<List<Object>, Treatment> retired = new ConcurrentHashMap<>();
+
+    Treatment resolve(Physiotherapist physio, String name, String expertise, int duration, double cost) {
+        Treatment offered = physio.findTreatment(name);
+        if (offered != null && offered.getExpertise().equals(expertise)
+                && offered.getDuration() == duration && offered.getCost() == cost) {
+            return offered;
+        }
+        return retired.computeIfAbsent(Arrays.asList(physio.getId(), name, expertise, duration, cost),
+                key -> new Treatment(name.intern(), expertise.intern(), duration, cost));
+    }
+}
@@ -2,11 +2,20 @@ package com.bpc.booking.service;
 
 import com.bpc.booking.model.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 
 public class BookingService {
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int MAX_BOOKING_ATTEMPTS = 3;
+    private static final LocalTime OPENING_TIME = LocalTime.of(9, 0);
+    private static final LocalTime CLOSING_TIME = LocalTime.of(17, 0);
     private final Clinic clinic;
 
     public BookingService(Clinic clinic) {
@@ -14,36 +23,59 @@ public class BookingService {
     }
 
     public void bookByExpertise(String expertise, String patientId) {
-        Patient patient = clinic.getPatients().stream()
-                .filter(p -> p.getId().equals(patientId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Patient not found: " + patientId));
+        Patient patient = clinic.getPatientById(patientId);
+        if (patient == null) {
+            throw new IllegalArgumentException("Patient not found: " + patientId);
+        }
 
         List<Physiotherapist> physios = clinic.searchByExpertise(expertise);
         if (physios.isEmpty()) {
             throw new IllegalArgumentException("No physiotherapist found with expertise: " + expertise);
         }
+        if (physios.stream().noneMatch(p -> findTreatment(p, expertise) != null)) {
+            throw new IllegalArgumentException("No treatment found for expertise: " + expertise);
+        }
 
-        Physiotherapist physio = physios.get(0); // Select the first available physiotherapist
-        Treatment treatment = physio.getTreatments().stream()
-                .filter(t -> t.getExpertise().equals(expertise))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("No treatment found for expertise: " + expertise));
+        IllegalArgumentException lastFailure = null;
+        for (int attempt = 0; attempt < MAX_BOOKING_ATTEMPTS; attempt++) {
+            // Search all physiotherapists in parallel; the earliest slot wins, ties go to the lowest physio ID
+            SlotOffer best = physios.parallelStream()
+                    .map(p -> offerFor(p, expertise))
+                    .filter(Objects::nonNull)
+                    .min(Comparator.comparing((SlotOffer o) -> o.start).thenComparing(o -> o.physio.getId()))
+                    .orElseThrow(() -> new IllegalArgumentException("No available slots for the selected physiotherapist."));
+            try {
+                clinic.bookAppointment(patient, best.physio, best.treatment, best.start.format(formatter));
+                return;
+            } catch (IllegalArgumentException e) {
+                // Another booking took the slot between the search and the booking; search again
+                lastFailure = e;
+            }
+        }
+        throw lastFailure;
+    }
 
-        // Find the earliest available slot
-        String dateTime = findEarliestAvailableSlot(physio, treatment);
-        if (dateTime == null) {
-            throw new IllegalArgumentException("No available slots for the selected physiotherapist.");
+    private SlotOffer offerFor(Physiotherapist physio, String expertise) {
+        Treatment treatment = findTreatment(physio, expertise);
+        if (treatment == null) {
+            return null;
         }
+        LocalDateTime start = findEarliestAvailableSlot(physio, treatment);
+        return start == null ? null : new SlotOffer(physio, treatment, start);
+    }
 
-        clinic.bookAppointment(patient, physio, treatment, dateTime);
+    private static Treatment findTreatment(Physiotherapist physio, String expertise) {
+        return physio.getTreatments().stream()
+                .filter(t -> t.getExpertise().equalsIgnoreCase(expertise.trim()))
+                .findFirst()
+                .orElse(null);
     }
 
     public void bookByPhysioName(String physioName, String patientId) {
-        Patient patient = clinic.getPatients().stream()
-                .filter(p -> p.getId().equals(patientId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Patient not found: " + patientId));
+        Patient patient = clinic.getPatientById(patientId);
+        if (patient == null) {
+            throw new IllegalArgumentException("Patient not found: " + patientId);
+        }
 
         Physiotherapist physio = clinic.searchByPhysioName(physioName);
         if (physio == null) {
@@ -51,53 +83,58 @@ public class BookingService {
         }
 
         Treatment treatment = physio.getTreatments().get(0); // Select the first treatment
-        String dateTime = findEarliestAvailableSlot(physio, treatment);
+        LocalDateTime dateTime = findEarliestAvailableSlot(physio, treatment);
         if (dateTime == null) {
             throw new IllegalArgumentException("No available slots for the selected physiotherapist.");
         }
 
-        clinic.bookAppointment(patient, physio, treatment, dateTime);
+        clinic.bookAppointment(patient, physio, treatment, dateTime.format(formatter));
     }
 
-    private String findEarliestAvailableSlot(Physiotherapist physio, Treatment treatment) {
-        LocalDateTime startDate = LocalDateTime.of(2025, 4, 1, 9, 0);
-        LocalDateTime endDate = LocalDateTime.of(2025, 4, 28, 17, 0);
-        LocalDateTime current = startDate;
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-
-        while (current.isBefore(endDate)) {
-            if (current.getDayOfWeek().getValue() <= 5) { // Monday-Friday
-                if (current.getHour() >= 9 && current.getHour() < 17) { // 9 AM-5 PM
-                    String dateTime = current.format(formatter);
-                    LocalDateTime appointmentDateTime = LocalDateTime.parse(dateTime, formatter);
-                    LocalDateTime appointmentEnd = appointmentDateTime.plusMinutes(treatment.getDuration());
-
-                    // Check availability within physiotherapist's schedule
-                    boolean isAvailable = clinic.getAvailabilities().stream()
-                            .filter(a -> a.getPhysioId().equals(physio.getId()))
-                            .filter(a -> a.getDate().equals(appointmentDateTime.toLocalDate()))
-                            .anyMatch(a -> !appointmentDateTime.toLocalTime().isBefore(a.getStartTime()) &&
-                                    !appointmentEnd.toLocalTime().isAfter(a.getEndTime()));
-
-                    // Check for overlapping appointments
-                    boolean hasOverlap = clinic.getAppointments().stream()
-                            .filter(a -> a.getPhysiotherapist().equals(physio))
-                            .filter(a -> a.getStatus() != Status.CANCELLED) // Ignore cancelled appointments
-                            .anyMatch(a -> {
-                                LocalDateTime existingStart = LocalDateTime.parse(a.getDateTime(), formatter);
-                                LocalDateTime existingEnd = existingStart.plusMinutes(a.getTreatment().getDuration());
-                                return !(appointmentEnd.isBefore(existingStart) || appointmentDateTime.isAfter(existingEnd));
-                            });
-
-                    if (isAvailable && !hasOverlap) {
-                        return dateTime;
-                    }
+    /**
+     * Returns the free slots for the treatment starting in [from, to) on weekdays between 9 AM and 5 PM.
+     * This is a read-only query; nothing is booked.
+     */
+    public List<LocalDateTime> findFreeSlots(Physiotherapist physio, Treatment treatment, LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> slots = new ArrayList<>();
+        for (LocalDate date = from.toLocalDate(); !date.isAfter(to.toLocalDate()); date = date.plusDays(1)) {
+            if (date.getDayOfWeek().getValue() <= 5) { // Monday-Friday
+                LocalDateTime dayStart = date.atTime(OPENING_TIME).isAfter(from) ? date.atTime(OPENING_TIME) : from;
+                LocalDateTime dayEnd = date.atTime(CLOSING_TIME).isBefore(to) ? date.atTime(CLOSING_TIME) : to;
+                if (dayStart.isBefore(dayEnd)) {
+                    slots.addAll(clinic.findFreeSlots(physio, treatment, dayStart, dayEnd));
+                }
+            }
+        }
+        return slots;
+    }
+
+    private LocalDateTime findEarliestAvailableSlot(Physiotherapist physio, Treatment treatment) {
+        LocalDate startDate = LocalDate.of(2025, 4, 1);
+        LocalDate endDate = LocalDate.of(2025, 4, 28);
+
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            if (date.getDayOfWeek().getValue() <= 5) { // Monday-Friday
+                // Appointments may start between 9 AM and 5 PM; availability and overlaps are checked by the clinic
+                LocalDateTime slot = clinic.findEarliestSlot(physio, date, treatment.getDuration(),
+                        OPENING_TIME.toSecondOfDay() / 60, CLOSING_TIME.toSecondOfDay() / 60);
+                if (slot != null) {
+                    return slot;
                 }
-                current = current.plusHours(1);
-            } else {
-                current = current.plusDays(1).withHour(9).withMinute(0);
             }
         }
         return null;
     }
-}
\ No newline at end of file
+
+    private static final class SlotOffer {
+        private final Physiotherapist physio;
+        private final Treatment treatment;
+        private final LocalDateTime start;
+
+        SlotOffer(Physiotherapist physio, Treatment treatment, LocalDateTime start) {
+            this.physio = physio;
+            this.treatment = treatment;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.bpc.booking.service;
+
+import com.bpc.booking.model.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Exports the appointments of a period, followed by per-physiotherapist and clinic summaries, as CSV or JSON.
+ * <p>
+ * Appointments are fetched one month at a time with {@link Clinic#scanAppointments} and written as they are
+ * read. Months of partitioned storage that are not in memory are read for the export only and not kept by
+ * the clinic, so beyond what the clinic already holds, memory use depends on the busiest month and the
+ * number of physiotherapists rather than on the length of the period. The summaries are accumulated along the way and written after the appointments, with the
+ * physiotherapists in report order.
+ */
+public class ReportExporter {
+    private static final String CSV_APPOINTMENT_HEADER = "date_time,physio_id,physio_name,patient_id,patient_name,treatment,status,cost";
+    private static final String CSV_PHYSIO_HEADER = "physio_id,physio_name,total,attended,booked,cancelled,revenue";
+    private static final String CSV_CLINIC_HEADER = "from,to,total,attended,booked,cancelled,revenue";
+
+    private final Clinic clinic;
+
+    public ReportExporter(Clinic clinic) {
+        this.clinic = clinic;
+    }
+
+    /**
+     * Writes three CSV tables separated by a blank line, each with a header row: the appointments starting
+     * between the two dates (inclusive) in start order, one summary row per physiotherapist, and the clinic
+     * summary. The writer is flushed but not closed.
+     */
+    public void exportCsv(LocalDate from, LocalDate to, Writer writer) throws IOException {
+        BufferedWriter out = new BufferedWriter(writer);
+        out.write(CSV_APPOINTMENT_HEADER);
+        out.newLine();
+        Totals totals = forEachAppointment(from, to, (appointment, status) -> {
+            out.write(String.join(",", csv(appointment.getDateTime()),
+                    csv(appointment.getPhysiotherapist().getId()), csv(appointment.getPhysiotherapist().getName()),
+                    csv(appointment.getPatient().getId()), csv(appointment.getPatient().getName()),
+                    csv(appointment.getTreatment().getName()), status.name(), money(appointment.getTreatment().getCost())));
+            out.newLine();
+        });
+
+        out.newLine();
+        out.write(CSV_PHYSIO_HEADER);
+        out.newLine();
+        for (Summary summary : totals.sortedPhysios()) {
+            out.write(csv(summary.physio.getId()) + "," + csv(summary.physio.getName()) + "," + csvCounts(summary));
+            out.newLine();
+        }
+
+        out.newLine();
+        out.write(CSV_CLINIC_HEADER);
+        out.newLine();
+        out.write(from + "," + to + "," + csvCounts(totals.overall));
+        out.newLine();
+        out.flush();
+    }
+
+    /**
+     * Writes one JSON object with the period, the appointments starting between the two dates (inclusive)
+     * in start order, the physiotherapist summaries and the clinic summary. The writer is flushed but not closed.
+     */
+    public void exportJson(LocalDate from, LocalDate to, Writer writer) throws IOException {
+        BufferedWriter out = new BufferedWriter(writer);
+        out.write("{\"from\":" + json(from.toString()) + ",\"to\":" + json(to.toString()) + ",\"appointments\":[");
+        boolean[] first = {true};
+        Totals totals = forEachAppointment(from, to, (appointment, status) -> {
+            out.write(first[0] ? "\n" : ",\n");
+            first[0] = false;
+            out.write("{\"dateTime\":" + json(appointment.getDateTime())
+                    + ",\"physioId\":" + json(appointment.getPhysiotherapist().getId())
+                    + ",\"physioName\":" + json(appointment.getPhysiotherapist().getName())
+                    + ",\"patientId\":" + json(appointment.getPatient().getId())
+                    + ",\"patientName\":" + json(appointment.getPatient().getName())
+                    + ",\"treatment\":" + json(appointment.getTreatment().getName())
+                    + ",\"status\":" + json(status.name())
+                    + ",\"cost\":" + money(appointment.getTreatment().getCost()) + "}");
+        });
+
+        out.write("\n],\"physiotherapists\":[");
+        List<Summary> physios = totals.sortedPhysios();
+        for (int i = 0; i < physios.size(); i++) {
+            Summary summary = physios.get(i);
+            out.write(i == 0 ? "\n" : ",\n");
+            out.write("{\"id\":" + json(summary.physio.getId()) + ",\"name\":" + json(summary.physio.getName())
+                    + "," + jsonCounts(summary) + "}");
+        }
+        out.write("\n],\"clinic\":{" + jsonCounts(totals.overall) + "}}\n");
+        out.flush();
+    }
+
+    // Streams the period month by month, passing each appointment with the status it is counted under
+    private Totals forEachAppointment(LocalDate from, LocalDate to, RowWriter rows) throws IOException {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("The export period ends before it starts.");
+        }
+        Totals totals = new Totals();
+        LocalDate monthStart = from;
+        while (!monthStart.isAfter(to)) {
+            LocalDate monthEnd = monthStart.with(TemporalAdjusters.lastDayOfMonth());
+            if (monthEnd.isAfter(to)) {
+                monthEnd = to;
+            }
+            List<Appointment> month = clinic.scanAppointments(monthStart, monthEnd);
+            month.sort(Comparator.comparingLong(Appointment::getStartMinute));
+            for (Appointment appointment : month) {
+                Status status = appointment.getStatus();
+                totals.add(appointment, status);
+                rows.write(appointment, status);
+            }
+            monthStart = monthEnd.plusDays(1);
+        }
+        return totals;
+    }
+
+    private interface RowWriter {
+        void write(Appointment appointment, Status status) throws IOException;
+    }
+
+    private final class Totals {
+        private final Summary overall = new Summary(null);
+        private final List<Summary> physios = new ArrayList<>();
+        private Summary[] byKey = new Summary[clinic.getPhysiotherapistKeyCount()];
+
+        void add(Appointment appointment, Status status) {
+            int key = clinic.getPhysiotherapistKey(appointment.getPhysiotherapist());
+            if (key >= byKey.length) {
+                byKey = Arrays.copyOf(byKey, clinic.getPhysiotherapistKeyCount());
+            }
+            Summary physio = byKey[key];
+            if (physio == null) {
+                physio = new Summary(appointment.getPhysiotherapist());
+                byKey[key] = physio;
+                physios.add(physio);
+            }
+            physio.add(appointment, status);
+            overall.add(appointment, status);
+        }
+
+        // Most attended appointments first, then by name, as in the report
+        List<Summary> sortedPhysios() {
+            List<Summary> sorted = new ArrayList<>(physios);
+            sorted.sort(Comparator.comparingInt((Summary s) -> s.counts[Status.ATTENDED.ordinal()]).reversed()
+                    .thenComparing(s -> s.physio.getName()));
+            return sorted;
+        }
+    }
+
+    private static final class Summary {
+        private final Physiotherapist physio;
+        private final int[] counts = new int[Status.values().length];
+        private final DoubleSummaryStatistics revenue = new DoubleSummaryStatistics();
+        private int total;
+
+        Summary(Physiotherapist physio) {
+            this.physio = physio;
+        }
+
+        void add(Appointment appointment, Status status) {
+            counts[status.ordinal()]++;
+            total++;
+            if (status == Status.ATTENDED) {
+                revenue.accept(appointment.getTreatment().getCost());
+            }
+        }
+    }
+
+    private static String csvCounts(Summary summary) {
+        return summary.total + "," + summary.counts[Status.ATTENDED.ordinal()] + "," + summary.counts[Status.BOOKED.ordinal()]
+                + "," + summary.counts[Status.CANCELLED.ordinal()] + "," + money(summary.revenue.getSum());
+    }
+
+    private static String jsonCounts(Summary summary) {
+        return "\"total\":" + summary.total + ",\"attended\":" + summary.counts[Status.ATTENDED.ordinal()]
+                + ",\"booked\":" + summary.counts[Status.BOOKED.ordinal()] + ",\"cancelled\":" + summary.counts[Status.CANCELLED.ordinal()]
+                + ",\"revenue\":" + money(summary.revenue.getSum());
+    }
+
+    // Fixed two decimals with a dot, whatever the default locale
+    private static String money(double amount) {
+        return String.format(Locale.ROOT, "%.2f", amount);
+    }
+
+    // Quotes values with commas, quotes or line breaks, doubling inner quotes
+    private static String csv(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    private static String json(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
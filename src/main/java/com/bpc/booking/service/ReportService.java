@@ -2,6 +2,10 @@ package com.bpc.booking.service;
 
 import com.bpc.booking.model.*;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -12,139 +16,217 @@ public class ReportService {
         this.clinic = clinic;
     }
 
+    /**
+     * Prints the end of term report to the console.
+     */
     public void generateReport() {
-        System.out.println("\n=================================================================");
-        System.out.println("          Boost Physio Clinic End of Term Report");
-        System.out.println("          Period: April 1, 2025 - April 28, 2025");
-        System.out.println("=================================================================\n");
+        try {
+            generateReport(ReportSink.console());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the report.", e);
+        }
+    }
 
-        // Group appointments by physiotherapist
-        Map<Physiotherapist, List<Appointment>> appointmentsByPhysio = clinic.getAppointments().stream()
-                .collect(Collectors.groupingBy(Appointment::getPhysiotherapist));
+    /**
+     * Renders the end of term report and writes it to {@code sink} in one piece. The section of each
+     * physiotherapist is rendered into its own buffer in parallel; the sections are joined in report order.
+     */
+    public void generateReport(ReportSink sink) throws IOException {
+        StringWriter buffer = new StringWriter();
+        PrintWriter out = new PrintWriter(buffer);
+        out.println("\n=================================================================");
+        out.println("          Boost Physio Clinic End of Term Report");
+        out.println("          Period: April 1, 2025 - April 28, 2025");
+        out.println("=================================================================\n");
+
+        // Aggregate counts, revenue and per-status lists in one pass over the appointments
+        List<Appointment> appointments = clinic.getAllAppointments();
+        ReportTotals totals = aggregate(appointments);
 
         // Sort physiotherapists by number of attended appointments (descending), then by name (alphabetical)
-        List<Map.Entry<Physiotherapist, List<Appointment>>> sortedPhysios = appointmentsByPhysio.entrySet().stream()
-                .sorted((e1, e2) -> {
-                    long attended1 = e1.getValue().stream().filter(a -> a.getStatus() == Status.ATTENDED).count();
-                    long attended2 = e2.getValue().stream().filter(a -> a.getStatus() == Status.ATTENDED).count();
-                    int compare = Long.compare(attended2, attended1); // Descending order
-                    if (compare == 0) {
-                        return e1.getKey().getName().compareTo(e2.getKey().getName()); // Alphabetical if tied
-                    }
-                    return compare;
-                })
-                .collect(Collectors.toList());
+        List<PhysioTotals> sortedPhysios = new ArrayList<>(totals.physios);
+        sortedPhysios.sort(Comparator.comparingInt((PhysioTotals p) -> p.count(Status.ATTENDED)).reversed()
+                .thenComparing(p -> p.physio.getName()));
 
         // Overall statistics
-        long totalAppointments = clinic.getAppointments().size();
-        long totalAttended = clinic.getAppointments().stream().filter(a -> a.getStatus() == Status.ATTENDED).count();
-        long totalBooked = clinic.getAppointments().stream().filter(a -> a.getStatus() == Status.BOOKED).count();
-        long totalCancelled = clinic.getAppointments().stream().filter(a -> a.getStatus() == Status.CANCELLED).count();
-        double totalRevenue = clinic.getAppointments().stream()
-                .filter(a -> a.getStatus() == Status.ATTENDED)
-                .mapToDouble(a -> a.getTreatment().getCost())
-                .sum();
+        long totalAppointments = appointments.size();
+        long totalAttended = totals.counts[Status.ATTENDED.ordinal()];
+        long totalBooked = totals.counts[Status.BOOKED.ordinal()];
+        long totalCancelled = totals.counts[Status.CANCELLED.ordinal()];
+        double totalRevenue = totals.revenue.getSum();
 
         // Report for each physiotherapist
-        for (Map.Entry<Physiotherapist, List<Appointment>> entry : sortedPhysios) {
-            Physiotherapist physio = entry.getKey();
-            List<Appointment> physioAppointments = entry.getValue();
-
-            System.out.println("-----------------------------------------------------------------");
-            System.out.println("Physiotherapist Details:");
-            System.out.println("-----------------------------------------------------------------");
-            System.out.println("Name: " + physio.getName());
-            System.out.println("Phone: " + physio.getPhoneNumber());
-            System.out.println("Expertise: " + String.join(", ", physio.getExpertise()));
-            System.out.println();
-
-            // Group appointments by status
-            Map<Status, List<Appointment>> appointmentsByStatus = physioAppointments.stream()
-                    .collect(Collectors.groupingBy(Appointment::getStatus));
-
-            // Display appointments by status
-            System.out.println("Appointments:");
-            System.out.println("-----------------------------------------------------------------");
-
-            // Attended Appointments
-            System.out.println("Attended Appointments:");
-            List<Appointment> attendedAppointments = appointmentsByStatus.getOrDefault(Status.ATTENDED, new ArrayList<>());
-            if (attendedAppointments.isEmpty()) {
-                System.out.println(" - None");
-            } else {
-                attendedAppointments.sort(Comparator.comparing(Appointment::getDateTime));
-                for (Appointment a : attendedAppointments) {
-                    System.out.printf(" - %s with %s at %s (Cost: $%.2f)%n",
-                            a.getTreatment().getName(),
-                            a.getPatient().getName(),
-                            a.getDateTime(),
-                            a.getTreatment().getCost());
-                }
+        List<String> sections = sortedPhysios.parallelStream()
+                .map(this::renderPhysioSection)
+                .collect(Collectors.toList());
+        for (String section : sections) {
+            out.print(section);
+        }
+
+        // Overall clinic summary
+        out.println("=================================================================");
+        out.println("Overall Clinic Summary:");
+        out.println("=================================================================");
+        out.println("Total Physiotherapists: " + clinic.getPhysiotherapists().size());
+        out.println("Total Patients: " + clinic.getPatients().size());
+        out.println("Total Appointments: " + totalAppointments);
+        out.println(" - Attended: " + totalAttended);
+        out.println(" - Booked: " + totalBooked);
+        out.println(" - Cancelled: " + totalCancelled);
+        out.printf("Total Clinic Revenue: $%.2f%n", totalRevenue);
+        out.println("=================================================================\n");
+        out.flush();
+        sink.write(buffer.toString());
+    }
+
+    private String renderPhysioSection(PhysioTotals entry) {
+        StringWriter buffer = new StringWriter();
+        PrintWriter out = new PrintWriter(buffer);
+        Physiotherapist physio = entry.physio;
+
+        out.println("-----------------------------------------------------------------");
+        out.println("Physiotherapist Details:");
+        out.println("-----------------------------------------------------------------");
+        out.println("Name: " + physio.getName());
+        out.println("Phone: " + physio.getPhoneNumber());
+        out.println("Expertise: " + String.join(", ", physio.getExpertise()));
+        out.println();
+
+        // Display appointments by status
+        out.println("Appointments:");
+        out.println("-----------------------------------------------------------------");
+
+        // Attended Appointments
+        out.println("Attended Appointments:");
+        List<Appointment> attendedAppointments = entry.sorted(Status.ATTENDED);
+        if (attendedAppointments.isEmpty()) {
+            out.println(" - None");
+        } else {
+            for (Appointment a : attendedAppointments) {
+                out.printf(" - %s with %s at %s (Cost: $%.2f)%n",
+                        a.getTreatment().getName(),
+                        a.getPatient().getName(),
+                        a.getDateTime(),
+                        a.getTreatment().getCost());
             }
+        }
 
-            // Booked Appointments
-            System.out.println("\nBooked Appointments:");
-            List<Appointment> bookedAppointments = appointmentsByStatus.getOrDefault(Status.BOOKED, new ArrayList<>());
-            if (bookedAppointments.isEmpty()) {
-                System.out.println(" - None");
-            } else {
-                bookedAppointments.sort(Comparator.comparing(Appointment::getDateTime));
-                for (Appointment a : bookedAppointments) {
-                    System.out.printf(" - %s with %s at %s (Cost: $%.2f)%n",
-                            a.getTreatment().getName(),
-                            a.getPatient().getName(),
-                            a.getDateTime(),
-                            a.getTreatment().getCost());
-                }
+        // Booked Appointments
+        out.println("\nBooked Appointments:");
+        List<Appointment> bookedAppointments = entry.sorted(Status.BOOKED);
+        if (bookedAppointments.isEmpty()) {
+            out.println(" - None");
+        } else {
+            for (Appointment a : bookedAppointments) {
+                out.printf(" - %s with %s at %s (Cost: $%.2f)%n",
+                        a.getTreatment().getName(),
+                        a.getPatient().getName(),
+                        a.getDateTime(),
+                        a.getTreatment().getCost());
             }
+        }
 
-            // Cancelled Appointments
-            System.out.println("\nCancelled Appointments:");
-            List<Appointment> cancelledAppointments = appointmentsByStatus.getOrDefault(Status.CANCELLED, new ArrayList<>());
-            if (cancelledAppointments.isEmpty()) {
-                System.out.println(" - None");
-            } else {
-                cancelledAppointments.sort(Comparator.comparing(Appointment::getDateTime));
-                for (Appointment a : cancelledAppointments) {
-                    System.out.printf(" - %s with %s at %s (Cost: $%.2f)%n",
-                            a.getTreatment().getName(),
-                            a.getPatient().getName(),
-                            a.getDateTime(),
-                            a.getTreatment().getCost());
-                }
+        // Cancelled Appointments
+        out.println("\nCancelled Appointments:");
+        List<Appointment> cancelledAppointments = entry.sorted(Status.CANCELLED);
+        if (cancelledAppointments.isEmpty()) {
+            out.println(" - None");
+        } else {
+            for (Appointment a : cancelledAppointments) {
+                out.printf(" - %s with %s at %s (Cost: $%.2f)%n",
+                        a.getTreatment().getName(),
+                        a.getPatient().getName(),
+                        a.getDateTime(),
+                        a.getTreatment().getCost());
             }
+        }
 
-            // Summary statistics
-            long attendedCount = attendedAppointments.size();
-            long bookedCount = bookedAppointments.size();
-            long cancelledCount = cancelledAppointments.size();
-            long totalPhysioAppointments = physioAppointments.size();
-            double physioRevenue = attendedAppointments.stream()
-                    .mapToDouble(a -> a.getTreatment().getCost())
-                    .sum();
-
-            System.out.println("\n-----------------------------------------------------------------");
-            System.out.println("Summary for " + physio.getName() + ":");
-            System.out.println("-----------------------------------------------------------------");
-            System.out.println("Total Appointments: " + totalPhysioAppointments);
-            System.out.println(" - Attended: " + attendedCount);
-            System.out.println(" - Booked: " + bookedCount);
-            System.out.println(" - Cancelled: " + cancelledCount);
-            System.out.printf("Total Revenue: $%.2f%n", physioRevenue);
-            System.out.println();
+        // Summary statistics
+        long attendedCount = attendedAppointments.size();
+        long bookedCount = bookedAppointments.size();
+        long cancelledCount = cancelledAppointments.size();
+        long totalPhysioAppointments = entry.total;
+        double physioRevenue = entry.revenue.getSum();
+
+        out.println("\n-----------------------------------------------------------------");
+        out.println("Summary for " + physio.getName() + ":");
+        out.println("-----------------------------------------------------------------");
+        out.println("Total Appointments: " + totalPhysioAppointments);
+        out.println(" - Attended: " + attendedCount);
+        out.println(" - Booked: " + bookedCount);
+        out.println(" - Cancelled: " + cancelledCount);
+        out.printf("Total Revenue: $%.2f%n", physioRevenue);
+        out.println();
+        out.flush();
+        return buffer.toString();
+    }
+
+    /**
+     * Groups the appointments by physiotherapist and status in one traversal, counting them and summing
+     * the revenue of attended ones per physiotherapist and for the clinic. Physiotherapists are listed in
+     * the order of their first appointment.
+     */
+    ReportTotals aggregate(List<Appointment> appointments) {
+        ReportTotals totals = new ReportTotals();
+        PhysioTotals[] byKey = new PhysioTotals[clinic.getPhysiotherapistKeyCount()];
+        for (Appointment appointment : appointments) {
+            int key = clinic.getPhysiotherapistKey(appointment.getPhysiotherapist());
+            if (key >= byKey.length) {
+                byKey = Arrays.copyOf(byKey, clinic.getPhysiotherapistKeyCount());
+            }
+            PhysioTotals physio = byKey[key];
+            if (physio == null) {
+                physio = new PhysioTotals(appointment.getPhysiotherapist());
+                byKey[key] = physio;
+                totals.physios.add(physio);
+            }
+            Status status = appointment.getStatus();
+            physio.add(appointment, status);
+            totals.counts[status.ordinal()]++;
+            if (status == Status.ATTENDED) {
+                totals.revenue.accept(appointment.getTreatment().getCost());
+            }
         }
+        return totals;
+    }
 
-        // Overall clinic summary
-        System.out.println("=================================================================");
-        System.out.println("Overall Clinic Summary:");
-        System.out.println("=================================================================");
-        System.out.println("Total Physiotherapists: " + clinic.getPhysiotherapists().size());
-        System.out.println("Total Patients: " + clinic.getPatients().size());
-        System.out.println("Total Appointments: " + totalAppointments);
-        System.out.println(" - Attended: " + totalAttended);
-        System.out.println(" - Booked: " + totalBooked);
-        System.out.println(" - Cancelled: " + totalCancelled);
-        System.out.printf("Total Clinic Revenue: $%.2f%n", totalRevenue);
-        System.out.println("=================================================================\n");
+    static final class ReportTotals {
+        final List<PhysioTotals> physios = new ArrayList<>();
+        final int[] counts = new int[Status.values().length];
+        // Compensated summation, as DoubleStream.sum uses
+        final DoubleSummaryStatistics revenue = new DoubleSummaryStatistics();
+    }
+
+    static final class PhysioTotals {
+        final Physiotherapist physio;
+        final Map<Status, List<Appointment>> byStatus = new EnumMap<>(Status.class);
+        final DoubleSummaryStatistics revenue = new DoubleSummaryStatistics();
+        int total;
+
+        PhysioTotals(Physiotherapist physio) {
+            this.physio = physio;
+            for (Status status : Status.values()) {
+                byStatus.put(status, new ArrayList<>());
+            }
+        }
+
+        void add(Appointment appointment, Status status) {
+            byStatus.get(status).add(appointment);
+            total++;
+            if (status == Status.ATTENDED) {
+                revenue.accept(appointment.getTreatment().getCost());
+            }
+        }
+
+        int count(Status status) {
+            return byStatus.get(status).size();
+        }
+
+        // Sorts by start; the sort is stable, so appointments with equal starts keep their order
+        List<Appointment> sorted(Status status) {
+            List<Appointment> list = byStatus.get(status);
+            list.sort(Comparator.comparingLong(Appointment::getStartMinute));
+            return list;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package com.bpc.booking.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Destination of a rendered report. The report is passed as one string, so a sink does a single write.
+ */
+public interface ReportSink {
+    void write(String report) throws IOException;
+
+    /**
+     * Prints to standard output.
+     */
+    static ReportSink console() {
+        return report -> {
+            System.out.print(report);
+            System.out.flush();
+        };
+    }
+
+    /**
+     * Writes to the file in UTF-8, replacing any previous content.
+     */
+    static ReportSink file(Path file) {
+        return report -> Files.writeString(file, report, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends to the buffer, for reports that are shown or processed elsewhere.
+     */
+    static ReportSink memory(StringBuilder buffer) {
+        return buffer::append;
+    }
+}
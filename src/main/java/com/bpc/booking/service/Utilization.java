@@ -0,0 +1,49 @@
+package com.bpc.booking.service;
+
+import com.bpc.booking.model.Physiotherapist;
+
+import java.time.LocalDate;
+
+/**
+ * Available and booked minutes of one physiotherapist over one day or one week. Booked minutes only count
+ * where the physiotherapist is available, so occupancy never exceeds 100%.
+ */
+public final class Utilization {
+    private final Physiotherapist physio;
+    private final LocalDate date;
+    private final int availableMinutes;
+    private final int bookedMinutes;
+
+    Utilization(Physiotherapist physio, LocalDate date, int availableMinutes, int bookedMinutes) {
+        this.physio = physio;
+        this.date = date;
+        this.availableMinutes = availableMinutes;
+        this.bookedMinutes = bookedMinutes;
+    }
+
+    public Physiotherapist getPhysiotherapist() {
+        return physio;
+    }
+
+    /**
+     * Returns the day, or the Monday of the week for weekly figures.
+     */
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getAvailableMinutes() {
+        return availableMinutes;
+    }
+
+    public int getBookedMinutes() {
+        return bookedMinutes;
+    }
+
+    /**
+     * Returns the booked share of the available minutes as a percentage, or 0 without availability.
+     */
+    public double getOccupancy() {
+        return availableMinutes == 0 ? 0 : bookedMinutes * 100.0 / availableMinutes;
+    }
+}
@@ -0,0 +1,60 @@
+package com.bpc.booking.service;
+
+import java.time.DayOfWeek;
+import java.util.List;
+
+/**
+ * Result of {@link UtilizationService#analyze}: utilization per physiotherapist per day and per week, and a
+ * clinic-wide heat map of available and booked minutes by day of the week and hour of the day.
+ */
+public final class UtilizationReport {
+    private final List<Utilization> daily;
+    private final List<Utilization> weekly;
+    // Indexed by DayOfWeek ordinal * 24 + hour
+    private final long[] availableByHour;
+    private final long[] bookedByHour;
+
+    UtilizationReport(List<Utilization> daily, List<Utilization> weekly, long[] availableByHour, long[] bookedByHour) {
+        this.daily = daily;
+        this.weekly = weekly;
+        this.availableByHour = availableByHour;
+        this.bookedByHour = bookedByHour;
+    }
+
+    /**
+     * Returns one entry per physiotherapist and day with availability, by physiotherapist, then date.
+     */
+    public List<Utilization> getDaily() {
+        return daily;
+    }
+
+    /**
+     * Returns one entry per physiotherapist and week (starting on Monday), by physiotherapist, then week.
+     */
+    public List<Utilization> getWeekly() {
+        return weekly;
+    }
+
+    public long getAvailableMinutes(DayOfWeek day, int hour) {
+        return availableByHour[cell(day, hour)];
+    }
+
+    public long getBookedMinutes(DayOfWeek day, int hour) {
+        return bookedByHour[cell(day, hour)];
+    }
+
+    /**
+     * Returns the clinic-wide occupancy percentage of the hour on that day of the week, or 0 without availability.
+     */
+    public double getOccupancy(DayOfWeek day, int hour) {
+        long available = availableByHour[cell(day, hour)];
+        return available == 0 ? 0 : bookedByHour[cell(day, hour)] * 100.0 / available;
+    }
+
+    private static int cell(DayOfWeek day, int hour) {
+        if (hour < 0 || hour >= 24) {
+            throw new IllegalArgumentException("Hour must be between 0 and 23: " + hour);
+        }
+        return day.ordinal() * 24 + hour;
+    }
+}
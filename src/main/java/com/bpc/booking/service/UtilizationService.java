@@ -0,0 +1,191 @@
+package com.bpc.booking.service;
+
+import com.bpc.booking.model.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Relates the physiotherapists' availability windows to their booked minutes.
+ * <p>
+ * Each physiotherapist's windows and non-cancelled appointments in the period become start and end events,
+ * packed into one long per event and sorted as primitives. A single sweep over them counts the minutes
+ * covered by at least one window, and of those the minutes covered by at least one appointment, so
+ * overlapping windows or bookings are not counted twice. Covered stretches are split at hour boundaries
+ * to fill the per-day totals and the clinic-wide heat map in the same pass.
+ */
+public class UtilizationService {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    // Event type in the low two bits; the order of events at the same minute does not affect the totals
+    private static final int AVAILABLE_END = 0;
+    private static final int BOOKED_END = 1;
+    private static final int AVAILABLE_START = 2;
+    private static final int BOOKED_START = 3;
+
+    private final Clinic clinic;
+
+    public UtilizationService(Clinic clinic) {
+        this.clinic = clinic;
+    }
+
+    /**
+     * Computes utilization for the days between the two dates (inclusive).
+     */
+    public UtilizationReport analyze(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("End date " + to + " is before start date " + from);
+        }
+        int days = Math.toIntExact(ChronoUnit.DAYS.between(from, to) + 1);
+        long origin = Appointment.toEpochMinute(from.atStartOfDay());
+
+        List<Availability> windows = new ArrayList<>();
+        int[] windowKeys = new int[clinic.getAvailabilities().size()];
+        for (Availability availability : clinic.getAvailabilities()) {
+            Physiotherapist physio = clinic.getPhysiotherapistById(availability.getPhysioId());
+            if (physio == null || availability.getDate().isBefore(from) || availability.getDate().isAfter(to)
+                    || !availability.getEndTime().isAfter(availability.getStartTime())) {
+                continue;
+            }
+            windowKeys[windows.size()] = clinic.getPhysiotherapistKey(physio);
+            windows.add(availability);
+        }
+        // Include the previous day so bookings running past midnight count towards the first day
+        List<Appointment> appointments = new ArrayList<>();
+        for (Appointment appointment : clinic.getAppointments(from.minusDays(1), to)) {
+            if (appointment.getStatus() != Status.CANCELLED) {
+                appointments.add(appointment);
+            }
+        }
+        int[] appointmentKeys = new int[appointments.size()];
+        for (int i = 0; i < appointmentKeys.length; i++) {
+            appointmentKeys[i] = clinic.getPhysiotherapistKey(appointments.get(i).getPhysiotherapist());
+        }
+
+        // Count the events per physiotherapist first, so each gets one exactly sized array
+        int keys = clinic.getPhysiotherapistKeyCount();
+        int[] counts = new int[keys];
+        for (int i = 0; i < windows.size(); i++) {
+            counts[windowKeys[i]] += 2;
+        }
+        for (int key : appointmentKeys) {
+            counts[key] += 2;
+        }
+        long[][] events = new long[keys][];
+        for (int key = 0; key < keys; key++) {
+            events[key] = new long[counts[key]];
+            counts[key] = 0;
+        }
+        for (int i = 0; i < windows.size(); i++) {
+            Availability window = windows.get(i);
+            long day = (window.getDate().toEpochDay() - from.toEpochDay()) * MINUTES_PER_DAY;
+            int key = windowKeys[i];
+            events[key][counts[key]++] = event(day + window.getStartTime().toSecondOfDay() / 60, AVAILABLE_START);
+            events[key][counts[key]++] = event(day + window.getEndTime().toSecondOfDay() / 60, AVAILABLE_END);
+        }
+        for (int i = 0; i < appointmentKeys.length; i++) {
+            Appointment appointment = appointments.get(i);
+            int key = appointmentKeys[i];
+            events[key][counts[key]++] = event(appointment.getStartMinute() - origin, BOOKED_START);
+            events[key][counts[key]++] = event(appointment.getEndMinute() - origin, BOOKED_END);
+        }
+
+        Sweep sweep = new Sweep(from.getDayOfWeek(), days, keys);
+        for (int key = 0; key < keys; key++) {
+            sweep.run(key, events[key]);
+        }
+        return sweep.toReport(from);
+    }
+
+    private static long event(long minute, int type) {
+        return minute << 2 | type;
+    }
+
+    private final class Sweep {
+        private final int firstDayOfWeek;
+        private final int[][] available;
+        private final int[][] booked;
+        private final long[] availableByHour = new long[7 * 24];
+        private final long[] bookedByHour = new long[7 * 24];
+
+        Sweep(DayOfWeek firstDay, int days, int keys) {
+            this.firstDayOfWeek = firstDay.ordinal();
+            this.available = new int[keys][days];
+            this.booked = new int[keys][days];
+        }
+
+        void run(int key, long[] events) {
+            Arrays.sort(events);
+            int windows = 0;
+            int bookings = 0;
+            long previous = 0;
+            for (long event : events) {
+                long minute = event >> 2;
+                if (windows > 0 && minute > previous) {
+                    cover(key, previous, minute, bookings > 0);
+                }
+                switch ((int) (event & 3)) {
+                    case AVAILABLE_END -> windows--;
+                    case BOOKED_END -> bookings--;
+                    case AVAILABLE_START -> windows++;
+                    default -> bookings++;
+                }
+                previous = minute;
+            }
+        }
+
+        // Adds the available stretch [from, to), in minutes since the start of the period, hour by hour
+        private void cover(int key, long from, long to, boolean isBooked) {
+            while (from < to) {
+                long end = Math.min(to, (from / 60 + 1) * 60);
+                int minutes = (int) (end - from);
+                int day = (int) (from / MINUTES_PER_DAY);
+                int cell = (firstDayOfWeek + day) % 7 * 24 + (int) (from % MINUTES_PER_DAY / 60);
+                available[key][day] += minutes;
+                availableByHour[cell] += minutes;
+                if (isBooked) {
+                    booked[key][day] += minutes;
+                    bookedByHour[cell] += minutes;
+                }
+                from = end;
+            }
+        }
+
+        UtilizationReport toReport(LocalDate from) {
+            List<Utilization> daily = new ArrayList<>();
+            List<Utilization> weekly = new ArrayList<>();
+            for (int key = 0; key < available.length; key++) {
+                Physiotherapist physio = clinic.getPhysiotherapistByKey(key);
+                LocalDate week = null;
+                int weekAvailable = 0;
+                int weekBooked = 0;
+                for (int day = 0; day < available[key].length; day++) {
+                    if (available[key][day] == 0) {
+                        continue;
+                    }
+                    LocalDate date = from.plusDays(day);
+                    daily.add(new Utilization(physio, date, available[key][day], booked[key][day]));
+                    LocalDate monday = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                    if (!monday.equals(week)) {
+                        if (week != null) {
+                            weekly.add(new Utilization(physio, week, weekAvailable, weekBooked));
+                        }
+                        week = monday;
+                        weekAvailable = 0;
+                        weekBooked = 0;
+                    }
+                    weekAvailable += available[key][day];
+                    weekBooked += booked[key][day];
+                }
+                if (week != null) {
+                    weekly.add(new Utilization(physio, week, weekAvailable, weekBooked));
+                }
+            }
+            return new UtilizationReport(daily, weekly, availableByHour, bookedByHour);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.bpc.booking.util;
+
+import com.bpc.booking.model.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Converts an appointments file between the text format and the compact binary format. The format of
+ * each file follows from its name: a name ending in .bin is binary, anything else is text.
+ */
+public class AppointmentConverter {
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: AppointmentConverter <from> <to>");
+            System.out.println("Example: AppointmentConverter src/main/resources/data/appointments.txt src/main/resources/data/appointments.bin");
+            return;
+        }
+        List<Physiotherapist> physios = DataLoader.loadPhysiotherapists();
+        DataLoader.loadTreatments(physios);
+        int count = convert(Paths.get(args[0]), Paths.get(args[1]), physios, DataLoader.loadPatients());
+        System.out.println("Converted " + count + " appointments to " + args[1]);
+    }
+
+    /**
+     * Loads the appointments in {@code from}, including any journal kept next to it, and writes them to
+     * {@code to}. Patients and physiotherapists are resolved against the given lists, as on a normal load.
+     * Returns the number of appointments written.
+     */
+    public static int convert(Path from, Path to, List<Physiotherapist> physios, List<Patient> patients) {
+        Clinic clinic = new Clinic();
+        clinic.setPhysiotherapists(physios);
+        clinic.setPatients(patients);
+        clinic.setAppointmentsFile(from);
+        clinic.loadAppointments();
+        clinic.setAppointmentsFile(to);
+        clinic.saveAppointments();
+        return clinic.getAppointments().size();
+    }
+}
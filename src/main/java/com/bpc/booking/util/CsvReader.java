@@ -0,0 +1,272 @@
+package com.bpc.booking.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Checksum;
+
+/**
+ * Streaming reader for the comma-separated data files. Records are decoded into one reusable buffer and
+ * fields are kept as offsets into it, so reading a record allocates nothing; strings are only created for
+ * the fields a caller asks for.
+ * <p>
+ * A field that starts with a double quote may contain commas, line breaks and doubled quotes; writers
+ * produce such fields with {@link #field(String)}. Unquoted addresses with commas are read with
+ * {@link #span(int, int)}. Lines end with \n, \r\n or \r, and trailing
+ * empty fields are dropped, as {@link String#split(String)} does.
+ */
+public final class CsvReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final CharsetDecoder decoder;
+    private final Checksum checksum;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private boolean endOfInput;
+    private boolean skipLineFeed;
+
+    private char[] record = new char[256];
+    private int length;
+    // Field i covers record[starts[i], ends[i]) without its quotes; fields are separated by one comma
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+
+    public CsvReader(Path file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * Reads the file in the platform charset, feeding every byte read to {@code checksum} if it is not null.
+     */
+    public CsvReader(Path file, Checksum checksum) throws IOException {
+        this(FileChannel.open(file), Charset.defaultCharset(), checksum);
+    }
+
+    private CsvReader(ReadableByteChannel channel, Charset charset, Checksum checksum) {
+        this.channel = channel;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.checksum = checksum;
+        chars.flip();
+    }
+
+    /**
+     * Returns a reader over the given text.
+     */
+    public static CsvReader of(String text) {
+        return new CsvReader(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))),
+                StandardCharsets.UTF_8, null);
+    }
+
+    /**
+     * Returns the value as a field of a data file record. A value with a double quote or a line break is
+     * quoted, with its quotes doubled, so that it reads back unchanged instead of starting a quoted field
+     * that runs into the following records. Other values, commas included, are written as they are.
+     */
+    public static String field(String value) {
+        if (value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Advances to the next record. Returns false at the end of the input.
+     */
+    public boolean next() throws IOException {
+        length = 0;
+        fieldCount = 0;
+        int c = read();
+        if (c == '\n' && skipLineFeed) {
+            c = read();
+        }
+        skipLineFeed = false;
+        if (c < 0) {
+            return false;
+        }
+
+        int fieldStart = 0;
+        boolean inQuotes = false;
+        while (true) {
+            if (inQuotes) {
+                if (c < 0) {
+                    break;
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        inQuotes = false;
+                        continue;
+                    }
+                }
+                append((char) c);
+            } else if (c < 0 || c == '\n') {
+                break;
+            } else if (c == '\r') {
+                skipLineFeed = true;
+                break;
+            } else if (c == ',') {
+                addField(fieldStart, length);
+                append(',');
+                fieldStart = length;
+            } else if (c == '"' && length == fieldStart) {
+                inQuotes = true;
+            } else {
+                append((char) c);
+            }
+            c = read();
+        }
+        addField(fieldStart, length);
+        while (fieldCount > 0 && starts[fieldCount - 1] == ends[fieldCount - 1]) {
+            fieldCount--;
+        }
+        return true;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns field {@code i} of the current record with surrounding whitespace removed.
+     */
+    public String get(int i) {
+        return span(i, i + 1);
+    }
+
+    /**
+     * Returns fields {@code from} (inclusive) to {@code to} (exclusive) of the current record joined by their
+     * commas, with surrounding whitespace removed. Used for unquoted values that themselves contain commas.
+     */
+    public String span(int from, int to) {
+        checkIndex(from);
+        checkIndex(to - 1);
+        int start = starts[from];
+        int end = ends[to - 1];
+        while (start < end && record[start] <= ' ') {
+            start++;
+        }
+        while (end > start && record[end - 1] <= ' ') {
+            end--;
+        }
+        return new String(record, start, end - start);
+    }
+
+    /**
+     * Parses field {@code i} as a decimal int without creating a string.
+     */
+    public int getInt(int i) {
+        checkIndex(i);
+        int pos = starts[i];
+        int end = ends[i];
+        while (pos < end && record[pos] <= ' ') {
+            pos++;
+        }
+        while (end > pos && record[end - 1] <= ' ') {
+            end--;
+        }
+        boolean negative = pos < end && record[pos] == '-';
+        if (negative || pos < end && record[pos] == '+') {
+            pos++;
+        }
+        if (pos == end) {
+            throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = record[pos] - '0';
+            if (digit < 0 || digit > 9 || (value = value * 10 + digit) > Integer.MAX_VALUE + 1L) {
+                throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+            }
+        }
+        if (!negative && value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + get(i) + "\"");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    public double getDouble(int i) {
+        return Double.parseDouble(get(i));
+    }
+
+    /**
+     * Returns the current record as read, without quotes, for error messages.
+     */
+    public String record() {
+        return new String(record, 0, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + i + " of a record with " + fieldCount + " fields");
+        }
+    }
+
+    private void append(char c) {
+        if (length == record.length) {
+            record = Arrays.copyOf(record, length * 2);
+        }
+        record[length++] = c;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private int read() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return chars.get();
+    }
+
+    // Decodes the next chunk into chars; returns false once the input is exhausted
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0) {
+            if (endOfInput) {
+                decoder.flush(chars);
+                break;
+            }
+            int start = bytes.position();
+            int read = channel.read(bytes);
+            if (read < 0) {
+                endOfInput = true;
+            } else if (read > 0 && checksum != null) {
+                ByteBuffer added = bytes.duplicate();
+                added.limit(start + read).position(start);
+                checksum.update(added);
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+}
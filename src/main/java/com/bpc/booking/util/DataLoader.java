@@ -2,41 +2,65 @@ package com.bpc.booking.util;
 
 import com.bpc.booking.model.*;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DataLoader {
+    public static final Path SNAPSHOT_FILE = Paths.get("src/main/resources/data/clinic.snapshot");
+    private static final String[] SNAPSHOT_SOURCES = {
+            "physiotherapists.txt", "treatments.txt", "patients.txt", "timetable.txt", "appointments.txt", "appointments.journal"
+    };
+
+    /**
+     * Restores the clinic from the snapshot image if it is at least as new as every text data file and the
+     * appointment journal. Returns null if there is no usable snapshot, in which case the text files are loaded.
+     */
+    public static Clinic loadSnapshot() {
+        if (!Files.exists(SNAPSHOT_FILE)) {
+            return null;
+        }
+        try {
+            FileTime snapshotTime = Files.getLastModifiedTime(SNAPSHOT_FILE);
+            for (String source : SNAPSHOT_SOURCES) {
+                Path file = SNAPSHOT_FILE.resolveSibling(source);
+                if (Files.exists(file) && Files.getLastModifiedTime(file).compareTo(snapshotTime) > 0) {
+                    return null;
+                }
+            }
+            return Clinic.loadSnapshot(SNAPSHOT_FILE);
+        } catch (IOException e) {
+            System.out.println("Could not read the clinic snapshot, loading the text files: " + e.getMessage());
+            return null;
+        }
+    }
+
     public static List<Physiotherapist> loadPhysiotherapists() {
         List<Physiotherapist> physios = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader("src/main/resources/data/physiotherapists.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 5) {
-                    String id = parts[0].trim();
-                    String name = parts[1].trim();
-                    // The address field may contain commas, so join parts 2 to (length-3) for the address
-                    StringBuilder addressBuilder = new StringBuilder();
-                    for (int i = 2; i < parts.length - 2; i++) {
-                        addressBuilder.append(parts[i]);
-                        if (i < parts.length - 3) {
-                            addressBuilder.append(",");
-                        }
-                    }
-                    String address = addressBuilder.toString().trim();
-                    // The second-to-last part is the phone number
-                    String phoneNumber = parts[parts.length - 2].trim();
-                    // The last part is the expertise list
-                    String[] expertise = parts[parts.length - 1].trim().split(";");
+        try (CsvReader reader = new CsvReader(Paths.get("src/main/resources/data/physiotherapists.txt"))) {
+            while (reader.next()) {
+                int fields = reader.fieldCount();
+                if (fields >= 5) {
+                    String id = reader.get(0);
+                    String name = reader.get(1);
+                    // The address field may contain commas, so it spans fields 2 to (fields-3)
+                    String address = reader.span(2, fields - 2);
+                    // The second-to-last field is the phone number
+                    String phoneNumber = reader.get(fields - 2);
+                    // The last field is the expertise list
+                    String[] expertise = reader.get(fields - 1).split(";");
 
                     Physiotherapist physio = new Physiotherapist(id, name, address, phoneNumber);
                     for (String exp : expertise) {
-                        physio.addExpertise(exp.trim());
+                        physio.addExpertise(exp.trim().intern());
                     }
                     physios.add(physio);
                 }
@@ -48,22 +72,24 @@ public class DataLoader {
     }
 
     public static void loadTreatments(List<Physiotherapist> physios) {
-        try (BufferedReader reader = new BufferedReader(new FileReader("src/main/resources/data/treatments.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 5) {
-                    String physioId = parts[0].trim();
-                    String name = parts[1].trim();
-                    String expertise = parts[2].trim();
-                    int duration = Integer.parseInt(parts[3].trim());
-                    double cost = Double.parseDouble(parts[4].trim());
+        Map<String, Physiotherapist> physiosById = new HashMap<>();
+        for (Physiotherapist physio : physios) {
+            physiosById.putIfAbsent(physio.getId(), physio);
+        }
+        try (CsvReader reader = new CsvReader(Paths.get("src/main/resources/data/treatments.txt"))) {
+            while (reader.next()) {
+                if (reader.fieldCount() == 5) {
+                    String physioId = reader.get(0);
+                    String name = reader.get(1);
+                    String expertise = reader.get(2).intern();
+                    int duration = reader.getInt(3);
+                    double cost = reader.getDouble(4);
 
                     Treatment treatment = new Treatment(name, expertise, duration, cost);
-                    physios.stream()
-                            .filter(p -> p.getId().equals(physioId))
-                            .findFirst()
-                            .ifPresent(p -> p.addTreatment(treatment));
+                    Physiotherapist physio = physiosById.get(physioId);
+                    if (physio != null) {
+                        physio.addTreatment(treatment);
+                    }
                 }
             }
         } catch (IOException e) {
@@ -72,24 +98,20 @@ public class DataLoader {
     }
 
     public static List<Patient> loadPatients() {
+        return loadPatients(Paths.get("src/main/resources/data/patients.txt"));
+    }
+
+    public static List<Patient> loadPatients(Path file) {
         List<Patient> patients = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader("src/main/resources/data/patients.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 4) {
-                    String id = parts[0].trim();
-                    String name = parts[1].trim();
-                    // The address field may contain commas, so join parts 2 to (length-2) for the address
-                    StringBuilder addressBuilder = new StringBuilder();
-                    for (int i = 2; i < parts.length - 1; i++) {
-                        addressBuilder.append(parts[i]);
-                        if (i < parts.length - 2) {
-                            addressBuilder.append(",");
-                        }
-                    }
-                    String address = addressBuilder.toString().trim();
-                    String phoneNumber = parts[parts.length - 1].trim();
+        try (CsvReader reader = new CsvReader(file)) {
+            while (reader.next()) {
+                int fields = reader.fieldCount();
+                if (fields >= 4) {
+                    String id = reader.get(0);
+                    String name = reader.get(1);
+                    // The address field may contain commas, so it spans fields 2 to (fields-2)
+                    String address = reader.span(2, fields - 1);
+                    String phoneNumber = reader.get(fields - 1);
 
                     Patient patient = new Patient(id, name, address, phoneNumber);
                     patients.add(patient);
@@ -102,22 +124,24 @@ public class DataLoader {
     }
 
     public static void loadTimetable(Clinic clinic) {
+        clinic.setAvailabilities(loadAvailabilities());
+    }
+
+    public static List<Availability> loadAvailabilities() {
         List<Availability> availabilities = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader("src/main/resources/data/timetable.txt"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    String physioId = parts[0].trim();
-                    LocalDate date = LocalDate.parse(parts[1].trim());
-                    LocalTime startTime = LocalTime.parse(parts[2].trim());
-                    LocalTime endTime = LocalTime.parse(parts[3].trim());
+        try (CsvReader reader = new CsvReader(Paths.get("src/main/resources/data/timetable.txt"))) {
+            while (reader.next()) {
+                if (reader.fieldCount() == 4) {
+                    String physioId = reader.get(0);
+                    LocalDate date = LocalDate.parse(reader.get(1));
+                    LocalTime startTime = LocalTime.parse(reader.get(2));
+                    LocalTime endTime = LocalTime.parse(reader.get(3));
                     availabilities.add(new Availability(physioId, date, startTime, endTime));
                 }
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
-        clinic.setAvailabilities(availabilities);
+        return availabilities;
     }
 }
\ No newline at end of file
@@ -0,0 +1,166 @@
+package com.bpc.booking.util;
+
+import com.bpc.booking.model.Clinic;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Background thread that writes the clinic's data files off the interactive thread.
+ * <p>
+ * Save requests mark the appointments or patients as dirty and return the future of the batch that will
+ * write them. The thread waits up to the configured delay after the first request of a batch, so a burst
+ * of changes is written once (group commit). {@link #flush()} writes the pending batch immediately, and
+ * {@link #close()} writes whatever is still pending before the thread stops. A batch whose files cannot be
+ * written completes exceptionally.
+ */
+public class PersistenceWriter implements AutoCloseable {
+    private final Clinic clinic;
+    private final long maxDelayMillis;
+    private final Thread thread;
+
+    private boolean appointmentsDirty;
+    private boolean patientsDirty;
+    private long firstRequest;
+    private boolean flushRequested;
+    private boolean closed;
+    private CompletableFuture<Void> pending;
+    private CompletableFuture<Void> inFlight;
+    private int batchCount;
+
+    public PersistenceWriter(Clinic clinic, long maxDelayMillis) {
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("The maximum delay cannot be negative.");
+        }
+        this.clinic = clinic;
+        this.maxDelayMillis = maxDelayMillis;
+        this.thread = new Thread(this::run, "persistence-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules appointments.txt to be rewritten; the future completes once the batch holding it is written.
+     */
+    public synchronized CompletableFuture<Void> saveAppointments() {
+        CompletableFuture<Void> batch = request();
+        appointmentsDirty = true;
+        return batch;
+    }
+
+    /**
+     * Schedules patients.txt to be rewritten; the future completes once the batch holding it is written.
+     */
+    public synchronized CompletableFuture<Void> savePatients() {
+        CompletableFuture<Void> batch = request();
+        patientsDirty = true;
+        return batch;
+    }
+
+    /**
+     * Writes the pending batch without waiting for the delay. The returned future completes once everything
+     * requested so far is durable; it is already complete if nothing was outstanding.
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        if (pending != null) {
+            flushRequested = true;
+            notifyAll();
+            return pending;
+        }
+        return inFlight != null ? inFlight : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Returns the number of batches written so far.
+     */
+    public synchronized int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Writes any pending batch and stops the thread. Further save requests are rejected.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> request() {
+        if (closed) {
+            throw new IllegalStateException("The persistence writer has been closed.");
+        }
+        if (pending == null) {
+            pending = new CompletableFuture<>();
+            firstRequest = System.currentTimeMillis();
+            notifyAll();
+        }
+        return pending;
+    }
+
+    private void run() {
+        while (true) {
+            boolean appointments;
+            boolean patients;
+            CompletableFuture<Void> batch;
+            synchronized (this) {
+                try {
+                    while (pending == null && !closed) {
+                        wait();
+                    }
+                    long remaining;
+                    while (pending != null && !closed && !flushRequested
+                            && (remaining = firstRequest + maxDelayMillis - System.currentTimeMillis()) > 0) {
+                        wait(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+                if (pending == null) {
+                    return;
+                }
+                appointments = appointmentsDirty;
+                patients = patientsDirty;
+                batch = pending;
+                appointmentsDirty = false;
+                patientsDirty = false;
+                flushRequested = false;
+                pending = null;
+                inFlight = batch;
+            }
+
+            RuntimeException failure = null;
+            try {
+                if (appointments) {
+                    clinic.saveAppointments();
+                }
+                if (patients) {
+                    clinic.savePatients();
+                }
+            } catch (RuntimeException e) {
+                // Callers that do not wait for the future still get to see the failure
+                e.printStackTrace();
+                failure = e;
+            }
+
+            // Count the batch before completing it, so a caller woken by the future sees it
+            synchronized (this) {
+                batchCount++;
+                if (inFlight == batch) {
+                    inFlight = null;
+                }
+            }
+            if (failure == null) {
+                batch.complete(null);
+            } else {
+                batch.completeExceptionally(failure);
+            }
+        }
+    }
+}
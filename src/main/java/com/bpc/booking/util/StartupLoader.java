@@ -0,0 +1,89 @@
+package com.bpc.booking.util;
+
+import com.bpc.booking.model.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Loads the text data files into a new clinic, reading independent files in parallel.
+ * <p>
+ * Physiotherapists, patients and the timetable are read concurrently. Treatments are attached once the
+ * physiotherapists are in, and appointments are loaded once the treatments are attached and the patients
+ * are registered, since they are resolved against them. The time spent on each file is recorded.
+ */
+public class StartupLoader {
+    private static final String[] FILES = {
+            "physiotherapists.txt", "treatments.txt", "patients.txt", "timetable.txt", "appointments.txt"
+    };
+
+    private final Map<String, Long> loadTimes = new ConcurrentHashMap<>();
+
+    public Clinic load() {
+        Clinic clinic = new Clinic();
+        CompletableFuture<List<Physiotherapist>> physios =
+                CompletableFuture.supplyAsync(() -> timed("physiotherapists.txt", DataLoader::loadPhysiotherapists));
+        CompletableFuture<List<Patient>> patients =
+                CompletableFuture.supplyAsync(() -> timed("patients.txt", DataLoader::loadPatients));
+        CompletableFuture<List<Availability>> availabilities =
+                CompletableFuture.supplyAsync(() -> timed("timetable.txt", DataLoader::loadAvailabilities));
+
+        // Appointments share the treatment instances of their physiotherapist, so they wait for treatments
+        CompletableFuture<Void> treatments = physios.thenAcceptAsync(list -> timed("treatments.txt", () -> {
+            DataLoader.loadTreatments(list);
+            return null;
+        }));
+        CompletableFuture<Void> appointments = treatments.thenAcceptBothAsync(patients, (ignored, patientList) -> {
+            clinic.setPhysiotherapists(physios.join());
+            clinic.setPatients(patientList);
+            timed("appointments.txt", () -> {
+                clinic.loadAppointments();
+                return null;
+            });
+        });
+
+        try {
+            CompletableFuture.allOf(treatments, appointments, availabilities).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        clinic.setAvailabilities(availabilities.join());
+        return clinic;
+    }
+
+    /**
+     * Returns the load time of each data file in milliseconds, in a fixed file order.
+     */
+    public Map<String, Long> getLoadTimes() {
+        Map<String, Long> times = new LinkedHashMap<>();
+        for (String file : FILES) {
+            Long nanos = loadTimes.get(file);
+            if (nanos != null) {
+                times.put(file, nanos / 1_000_000);
+            }
+        }
+        return times;
+    }
+
+    public void printLoadTimes() {
+        System.out.println("Loaded data files:");
+        getLoadTimes().forEach((file, millis) -> System.out.println(" - " + file + ": " + millis + " ms"));
+    }
+
+    private <T> T timed(String file, Supplier<T> load) {
+        long start = System.nanoTime();
+        try {
+            return load.get();
+        } finally {
+            loadTimes.put(file, System.nanoTime() - start);
+        }
+    }
+}
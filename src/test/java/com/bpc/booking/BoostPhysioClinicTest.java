@@ -2,15 +2,43 @@ package com.bpc.booking;
 
 import com.bpc.booking.model.*;
 import com.bpc.booking.service.BookingService;
+import com.bpc.booking.service.ReportExporter;
 import com.bpc.booking.service.ReportService;
+import com.bpc.booking.service.ReportSink;
+import com.bpc.booking.service.UtilizationReport;
+import com.bpc.booking.service.UtilizationService;
+import com.bpc.booking.util.AppointmentConverter;
+import com.bpc.booking.util.CsvReader;
+import com.bpc.booking.util.DataLoader;
+import com.bpc.booking.util.PersistenceWriter;
+import com.bpc.booking.util.StartupLoader;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -83,6 +111,18 @@ public class BoostPhysioClinicTest {
         assertEquals(Status.BOOKED, appointment.getStatus());
     }
 
+    @Test
+    public void testAppointmentParsedTime() {
+        Appointment appointment = new Appointment(patient1, physio1, treatment1, "2025-04-01 10:00");
+        assertEquals(LocalDateTime.of(2025, 4, 1, 10, 0), appointment.getStart());
+        assertEquals(Appointment.toEpochMinute(LocalDateTime.of(2025, 4, 1, 10, 0)), appointment.getStartMinute());
+        assertEquals(appointment.getStartMinute() + 60, appointment.getEndMinute());
+
+        Appointment typed = new Appointment(patient1, physio1, treatment1, LocalDateTime.of(2025, 4, 1, 10, 0));
+        assertEquals("2025-04-01 10:00", typed.getDateTime());
+        assertEquals(appointment, typed);
+    }
+
     @Test
     public void testChangeStatus() {
         Appointment appointment = new Appointment(patient1, physio1, treatment1, "2025-04-01 10:00");
@@ -211,6 +251,22 @@ public class BoostPhysioClinicTest {
         assertFalse(clinic.getPatients().contains(patient3));
     }
 
+    @Test
+    public void testLookupById() {
+        assertEquals(patient1, clinic.getPatientById("ID101"));
+        assertEquals(physio2, clinic.getPhysiotherapistById("ID002"));
+        assertNull(clinic.getPatientById("ID103"));
+
+        Patient patient3 = new Patient("ID103", "Sophia Nguyen", "789 Queen St E, Toronto", "416-555-0103");
+        clinic.addPatient(patient3);
+        assertSame(patient3, clinic.getPatientById("ID103"));
+        clinic.removePatient("ID103");
+        assertNull(clinic.getPatientById("ID103"));
+
+        clinic.setPhysiotherapists(new ArrayList<>(List.of(physio2)));
+        assertNull(clinic.getPhysiotherapistById("ID001"));
+    }
+
     @Test
     public void testBookAppointmentSuccess() {
         clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 10:00");
@@ -232,6 +288,23 @@ public class BoostPhysioClinicTest {
         assertEquals("Physiotherapist is not available at the requested time.", exception.getMessage());
     }
 
+    @Test
+    public void testIsAvailable() {
+        List<Availability> availabilities = new ArrayList<>(clinic.getAvailabilities());
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 4, 1), LocalTime.of(14, 0), LocalTime.of(17, 0)));
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 4, 1), LocalTime.of(10, 0), LocalTime.of(11, 0)));
+        clinic.setAvailabilities(availabilities);
+
+        assertTrue(clinic.isAvailable(physio1, LocalDateTime.of(2025, 4, 1, 9, 0), 180));
+        assertTrue(clinic.isAvailable(physio1, LocalDateTime.of(2025, 4, 1, 10, 30), 90));
+        assertTrue(clinic.isAvailable(physio1, LocalDateTime.of(2025, 4, 1, 16, 0), 60));
+        assertFalse(clinic.isAvailable(physio1, LocalDateTime.of(2025, 4, 1, 11, 30), 60));
+        assertFalse(clinic.isAvailable(physio1, LocalDateTime.of(2025, 4, 1, 12, 0), 60));
+        assertFalse(clinic.isAvailable(physio1, LocalDateTime.of(2025, 4, 2, 9, 0), 60));
+        assertFalse(clinic.isAvailable(physio2, LocalDateTime.of(2025, 4, 1, 10, 30), 60));
+        assertEquals(3, clinic.getAvailabilities(physio1, LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 28)).size());
+    }
+
     @Test
     public void testBookAppointmentOverlapping() {
         clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 10:00");
@@ -241,6 +314,106 @@ public class BoostPhysioClinicTest {
         assertEquals("Physiotherapist already has an appointment at the requested time.", exception.getMessage());
     }
 
+    @Test
+    public void testConcurrentBookingHasNoOverlaps() throws Exception {
+        int threads = 16;
+        int attemptsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    boolean firstPhysio = random.nextBoolean();
+                    Physiotherapist physio = firstPhysio ? physio1 : physio2;
+                    Treatment treatment = firstPhysio ? treatment1 : treatment2;
+                    LocalTime time = LocalTime.of(9, 0).plusMinutes(5L * random.nextInt(36));
+                    try {
+                        clinic.bookAppointment(patient1, physio, treatment, "2025-04-01 " + time);
+                        if (random.nextInt(4) == 0) {
+                            clinic.cancelAppointment("2025-04-01 " + time, physio);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // Slot taken or outside availability
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        List<Appointment> active = clinic.getAppointments().stream()
+                .filter(a -> a.getStatus() == Status.BOOKED)
+                .collect(Collectors.toList());
+        assertFalse(active.isEmpty());
+        for (Appointment a : active) {
+            for (Appointment b : active) {
+                if (a != b && a.getPhysiotherapist().equals(b.getPhysiotherapist())) {
+                    assertTrue(a.getEndMinute() <= b.getStartMinute() || b.getEndMinute() <= a.getStartMinute(),
+                            "Overlapping appointments at " + a.getDateTime() + " and " + b.getDateTime());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFindEarliestSlot() {
+        LocalDate day = LocalDate.of(2025, 4, 1);
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-04-01 10:20");
+
+        // 10:00-10:20 and 11:20-12:00 are the only gaps in the 09:00-12:00 window
+        assertNull(clinic.findEarliestSlot(physio1, day, 60, 9 * 60, 17 * 60));
+        assertEquals(LocalDateTime.of(2025, 4, 1, 10, 0), clinic.findEarliestSlot(physio1, day, 20, 9 * 60, 17 * 60));
+        assertEquals(LocalDateTime.of(2025, 4, 1, 11, 20), clinic.findEarliestSlot(physio1, day, 40, 9 * 60, 17 * 60));
+        assertEquals(LocalDateTime.of(2025, 4, 1, 11, 25), clinic.findEarliestSlot(physio1, day, 15, 11 * 60 + 25, 17 * 60));
+        assertNull(clinic.findEarliestSlot(physio1, day.plusDays(1), 15, 9 * 60, 17 * 60));
+
+        // The bitmap search agrees with the direct availability and overlap checks
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            int duration = 5 + 5 * random.nextInt(24);
+            int from = 5 * random.nextInt(12 * 24);
+            LocalDateTime expected = null;
+            for (int minute = from; minute < 17 * 60 && expected == null; minute += 5) {
+                LocalDateTime candidate = day.atStartOfDay().plusMinutes(minute);
+                if (clinic.isAvailable(physio1, candidate, duration) && !clinic.hasOverlap(physio1, candidate, duration)) {
+                    expected = candidate;
+                }
+            }
+            assertEquals(expected, clinic.findEarliestSlot(physio1, day, duration, from, 17 * 60));
+        }
+    }
+
+    @Test
+    public void testFindFreeSlots() {
+        List<Availability> availabilities = new ArrayList<>(clinic.getAvailabilities());
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 4, 5), LocalTime.of(9, 0), LocalTime.of(12, 0)));
+        clinic.setAvailabilities(availabilities);
+        LocalDateTime from = LocalDateTime.of(2025, 4, 1, 9, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 4, 5, 17, 0);
+
+        assertEquals(List.of(LocalDateTime.of(2025, 4, 1, 9, 0), LocalDateTime.of(2025, 4, 1, 10, 0),
+                        LocalDateTime.of(2025, 4, 1, 11, 0)),
+                bookingService.findFreeSlots(physio1, treatment1, from, to));
+
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 10:20");
+        assertEquals(List.of(LocalDateTime.of(2025, 4, 1, 9, 0)), bookingService.findFreeSlots(physio1, treatment1, from, to));
+        assertEquals(1, clinic.getAppointments().size());
+
+        // The clinic-level query ignores business days, so the Saturday window is offered there
+        assertEquals(List.of(LocalDateTime.of(2025, 4, 1, 9, 0), LocalDateTime.of(2025, 4, 5, 9, 0),
+                        LocalDateTime.of(2025, 4, 5, 10, 0), LocalDateTime.of(2025, 4, 5, 11, 0)),
+                clinic.findFreeSlots(physio1, treatment1, from, to));
+    }
+
     @Test
     public void testBookAppointmentWrongExpertise() {
         // Physio1 doesn't have expertise in Rehabilitation
@@ -258,6 +431,414 @@ public class BoostPhysioClinicTest {
         assertEquals(Status.CANCELLED, appointment.getStatus());
     }
 
+    @Test
+    public void testFindAndRescheduleAppointment() {
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 10:00");
+        clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 10:00");
+        assertEquals(patient2, clinic.findAppointment("2025-04-01 10:00", physio2).getPatient());
+        assertNull(clinic.findAppointment("2025-04-01 11:00", physio1));
+
+        // A rebooked slot resolves to the new appointment rather than the cancelled one
+        clinic.cancelAppointment("2025-04-01 10:00", physio2);
+        clinic.bookAppointment(patient1, physio2, treatment2, "2025-04-01 10:00");
+        clinic.markAttended("2025-04-01 10:00", physio2);
+        assertEquals(Status.CANCELLED, clinic.getAppointments().get(1).getStatus());
+        assertEquals(Status.ATTENDED, clinic.getAppointments().get(2).getStatus());
+
+        // Moving into a slot that overlaps only the appointment itself is allowed
+        Appointment moved = clinic.rescheduleAppointment("2025-04-01 10:00", physio1, "2025-04-01 10:30");
+        assertEquals(Status.CANCELLED, clinic.getAppointments().get(0).getStatus());
+        assertEquals(patient1, moved.getPatient());
+        assertSame(moved, clinic.findAppointment("2025-04-01 10:30", physio1));
+
+        // A failed move leaves the original appointment booked
+        assertThrows(IllegalArgumentException.class, () ->
+                clinic.rescheduleAppointment("2025-04-01 10:30", physio1, "2025-04-01 11:30"));
+        assertEquals(Status.BOOKED, moved.getStatus());
+        assertEquals(4, clinic.getAppointments().size());
+    }
+
+    @Test
+    public void testJournalReplay(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("appointments.txt");
+        clinic.setAppointmentsFile(file);
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.saveAppointments();
+        clinic.openJournal(AppointmentJournal.SyncPolicy.ALWAYS, 100);
+
+        clinic.markAttended("2025-04-01 09:00", physio1);
+        clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 09:00");
+        clinic.cancelAppointment("2025-04-01 09:00", physio2);
+        clinic.bookAppointment(patient1, physio2, treatment2, "2025-04-01 09:00");
+        clinic.rescheduleAppointment("2025-04-01 09:00", physio2, "2025-04-01 10:00");
+        clinic.closeJournal();
+        assertEquals(1, Files.readAllLines(file).size());
+        // The move is a single record, so it replays whole or not at all
+        List<String> records = Files.readAllLines(dir.resolve("appointments.journal"));
+        assertEquals(1, records.stream().filter(record -> record.startsWith("R,")).count());
+        assertTrue(records.get(records.size() - 1).startsWith("R,"));
+
+        // A torn last record is ignored
+        Files.write(dir.resolve("appointments.journal"), "S,ID001,2025-04-01 09:00,CANC".getBytes(), StandardOpenOption.APPEND);
+
+        Clinic restarted = reloadClinic(file);
+        assertEquals(clinic.getAppointments().toString(), restarted.getAppointments().toString());
+        assertEquals(Status.ATTENDED, restarted.findAppointment("2025-04-01 09:00", physio1).getStatus());
+        assertEquals(Status.BOOKED, restarted.findAppointment("2025-04-01 10:00", physio2).getStatus());
+        assertThrows(IllegalArgumentException.class, () ->
+                restarted.bookAppointment(patient2, physio2, treatment2, "2025-04-01 10:30"));
+
+        // The torn tail is cut off, so a record appended after it is replayed on the next restart
+        restarted.openJournal(AppointmentJournal.SyncPolicy.ALWAYS, 100);
+        restarted.bookAppointment(patient2, physio1, treatment1, "2025-04-01 10:30");
+        restarted.closeJournal();
+        Clinic again = reloadClinic(file);
+        assertEquals(restarted.getAppointments().toString(), again.getAppointments().toString());
+        assertNotNull(again.findAppointment("2025-04-01 10:30", physio1));
+
+        // A move torn mid-record neither cancels the old slot nor books the new one
+        again.openJournal(AppointmentJournal.SyncPolicy.ALWAYS, 100);
+        again.rescheduleAppointment("2025-04-01 10:30", physio1, "2025-04-01 11:00");
+        again.closeJournal();
+        Path journal = dir.resolve("appointments.journal");
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length - 10));
+        Clinic torn = reloadClinic(file);
+        assertEquals(Status.BOOKED, torn.findAppointment("2025-04-01 10:30", physio1).getStatus());
+        assertNull(torn.findAppointment("2025-04-01 11:00", physio1));
+    }
+
+    @Test
+    public void testJournalCompaction(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("appointments.txt");
+        clinic.setAppointmentsFile(file);
+        clinic.loadAppointments();
+        clinic.openJournal(AppointmentJournal.SyncPolicy.NEVER, 2);
+
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        assertFalse(Files.exists(file));
+        clinic.markAttended("2025-04-01 09:00", physio1);
+        assertEquals(1, Files.readAllLines(file).size());
+        assertEquals(1, Files.readAllLines(dir.resolve("appointments.journal")).size());
+
+        // The folded records are not replayed a second time
+        clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 09:00");
+        clinic.closeJournal();
+        Clinic restarted = reloadClinic(file);
+        assertEquals(clinic.getAppointments().toString(), restarted.getAppointments().toString());
+
+        // A journal left behind by a crash after the base file was rewritten is stale and ignored
+        Path journal = dir.resolve("appointments.journal");
+        byte[] stale = Files.readAllBytes(journal);
+        restarted.saveAppointments();
+        Files.write(journal, stale);
+        assertEquals(2, reloadClinic(file).getAppointments().size());
+    }
+
+    @Test
+    public void testSnapshotRoundTrip(@TempDir Path dir) throws Exception {
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, new Treatment("Sports Massage", "Sports Medicine", 30, 70.0), "2025-04-01 10:00");
+        clinic.cancelAppointment("2025-04-01 09:00", physio2);
+        clinic.removePatient("ID102");
+
+        Path file = dir.resolve("clinic.snapshot");
+        clinic.saveSnapshot(file).join();
+        Clinic restored = Clinic.loadSnapshot(file);
+
+        assertEquals(clinic.getAppointments().toString(), restored.getAppointments().toString());
+        assertEquals(1, restored.getPatients().size());
+        assertEquals(2, restored.getAvailabilities().size());
+        Physiotherapist restoredPhysio = restored.getPhysiotherapistById("ID001");
+        assertEquals(physio1.getExpertise(), restoredPhysio.getExpertise());
+        assertSame(restoredPhysio.getTreatments().get(0), restored.getAppointments().get(0).getTreatment());
+        assertEquals(Status.CANCELLED, restored.getAppointments().get(1).getStatus());
+        assertTrue(restored.isAvailable(restoredPhysio, LocalDateTime.of(2025, 4, 1, 11, 0), 60));
+        assertTrue(restored.hasOverlap(restoredPhysio, LocalDateTime.of(2025, 4, 1, 10, 15), 30));
+
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        assertThrows(IOException.class, () -> Clinic.loadSnapshot(file));
+    }
+
+    @Test
+    public void testQuotedValuesRoundTrip(@TempDir Path dir) {
+        // A leading quote must not start a quoted field that swallows the following records
+        Patient quoted = new Patient("ID113", "\"Bob", "1 Main St,\"Rear\"", "416-555-0113");
+        clinic.addPatient(quoted);
+        clinic.addPatient(new Patient("ID114", "Ann Lee", "2 Main St, Toronto", "416-555-0114"));
+        Path patientsFile = dir.resolve("patients.txt");
+        clinic.savePatients(patientsFile);
+        List<Patient> loaded = DataLoader.loadPatients(patientsFile);
+        assertEquals(4, loaded.size());
+        assertEquals("\"Bob", loaded.get(2).getName());
+        assertEquals("1 Main St,\"Rear\"", loaded.get(2).getAddress());
+        assertEquals("2 Main St, Toronto", loaded.get(3).getAddress());
+
+        Path file = dir.resolve("appointments.txt");
+        clinic.setAppointmentsFile(file);
+        clinic.bookAppointment(quoted, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-04-01 10:00");
+        clinic.saveAppointments();
+        Clinic restarted = reloadClinic(file);
+        assertEquals(2, restarted.getAppointments().size());
+        assertEquals(clinic.getAppointments().toString(), restarted.getAppointments().toString());
+    }
+
+    @Test
+    public void testCsvReader() throws Exception {
+        CsvReader reader = CsvReader.of("ID101, Emily Carter ,123 Yonge St, Toronto,416-555-0101\r\n"
+                + "\"ID102\",\"456 Bloor St W, Toronto\",\"say \"\"hi\"\"\nthere\", 42 ,,\n"
+                + "\n"
+                + "-17,x");
+        assertTrue(reader.next());
+        assertEquals(5, reader.fieldCount());
+        assertEquals("Emily Carter", reader.get(1));
+        assertEquals("123 Yonge St, Toronto", reader.span(2, 4));
+        assertEquals("416-555-0101", reader.get(4));
+
+        assertTrue(reader.next());
+        assertEquals(4, reader.fieldCount());
+        assertEquals("ID102", reader.get(0));
+        assertEquals("456 Bloor St W, Toronto", reader.get(1));
+        assertEquals("say \"hi\"\nthere", reader.get(2));
+        assertEquals(42, reader.getInt(3));
+        assertThrows(NumberFormatException.class, () -> reader.getInt(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> reader.get(4));
+
+        assertTrue(reader.next());
+        assertEquals(0, reader.fieldCount());
+        assertTrue(reader.next());
+        assertEquals(-17, reader.getInt(0));
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void testBinaryAppointmentStore(@TempDir Path dir) throws Exception {
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-04-01 10:00");
+        clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 09:00");
+        clinic.markAttended("2025-04-01 09:00", physio1);
+        clinic.cancelAppointment("2025-04-01 09:00", physio2);
+        Path text = dir.resolve("appointments.txt");
+        clinic.setAppointmentsFile(text);
+        clinic.saveAppointments();
+
+        Path binary = dir.resolve("appointments.bin");
+        assertEquals(3, AppointmentConverter.convert(text, binary, clinic.getPhysiotherapists(), clinic.getPatients()));
+        assertTrue(Files.size(binary) < Files.size(text));
+        Clinic loaded = reloadClinic(binary);
+        assertEquals(clinic.getAppointments().toString(), loaded.getAppointments().toString());
+        assertSame(loaded.getAppointments().get(0).getTreatment(), loaded.getAppointments().get(1).getTreatment());
+
+        Path back = dir.resolve("appointments-back.txt");
+        AppointmentConverter.convert(binary, back, clinic.getPhysiotherapists(), clinic.getPatients());
+        assertEquals(Files.readAllLines(text), Files.readAllLines(back));
+    }
+
+    @Test
+    public void testLoadedAppointmentsShareTreatments(@TempDir Path dir) throws Exception {
+        Treatment repriced = new Treatment("Pool Therapy", "Rehabilitation", 60, 120.0);
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-04-01 10:00");
+        clinic.bookAppointment(patient1, physio2, repriced, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio2, repriced, "2025-04-01 10:00");
+        Path file = dir.resolve("appointments.txt");
+        clinic.setAppointmentsFile(file);
+        clinic.saveAppointments();
+
+        Map<String, Treatment> byPatientAndPhysio = reloadClinic(file).getAppointments().stream()
+                .collect(Collectors.toMap(a -> a.getPatient().getId() + a.getPhysiotherapist().getId(), Appointment::getTreatment));
+        // Offered treatments resolve to the physiotherapist's instance, others to one shared copy
+        assertSame(treatment1, byPatientAndPhysio.get("ID101ID001"));
+        assertSame(treatment1, byPatientAndPhysio.get("ID102ID001"));
+        assertNotSame(treatment2, byPatientAndPhysio.get("ID101ID002"));
+        assertEquals(120.0, byPatientAndPhysio.get("ID101ID002").getCost());
+        assertSame(byPatientAndPhysio.get("ID101ID002"), byPatientAndPhysio.get("ID102ID002"));
+    }
+
+    @Test
+    public void testArchivedAppointments(@TempDir Path dir) {
+        // More history than one column chunk holds
+        List<Appointment> history = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 9, 0);
+        for (int i = 0; i < 5000; i++) {
+            Appointment appointment = new Appointment(i % 2 == 0 ? patient1 : patient2, physio1, treatment1, start.plusHours(i));
+            appointment.changeStatus(i % 3 == 0 ? Status.CANCELLED : Status.ATTENDED);
+            history.add(appointment);
+        }
+        List<Appointment> all = new ArrayList<>(history);
+        all.add(new Appointment(patient1, physio1, treatment1, "2025-04-01 09:00"));
+        clinic.setAppointments(all);
+        List<String> expected = clinic.getAllAppointments().stream().map(Appointment::toString).collect(Collectors.toList());
+
+        assertEquals(5000, clinic.archiveAppointmentsBefore(LocalDate.of(2025, 1, 1)));
+        assertEquals(1, clinic.getAppointments().size());
+        assertEquals(expected, clinic.getAllAppointments().stream().map(Appointment::toString).collect(Collectors.toList()));
+        List<Appointment> january = clinic.getAppointments(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31));
+        assertEquals(31 * 24 - 9, january.size());
+        assertEquals(history.get(1).toString(), january.get(1).toString());
+
+        // Archived appointments are read-only and their period cannot be booked
+        assertThrows(IllegalArgumentException.class, () -> clinic.cancelAppointment("2024-01-01 10:00", physio1));
+        assertThrows(IllegalArgumentException.class, () -> clinic.bookAppointment(patient1, physio1, treatment1, "2024-12-31 09:00"));
+        assertThrows(IllegalArgumentException.class, () -> clinic.archiveAppointmentsBefore(LocalDate.of(2024, 6, 1)));
+        assertThrows(IllegalStateException.class, () -> january.get(1).changeStatus(Status.CANCELLED));
+        assertThrows(IllegalStateException.class, () -> history.get(1).changeStatus(Status.CANCELLED));
+        assertEquals(Status.ATTENDED, january.get(1).getStatus());
+
+        // Saving writes the archive too, and a reload archives the same appointments again
+        Path file = dir.resolve("appointments.txt");
+        clinic.setAppointmentsFile(file);
+        clinic.saveAppointments();
+        clinic.loadAppointments();
+        assertEquals(5000, clinic.getArchivedAppointmentCount());
+        assertEquals(expected, clinic.getAllAppointments().stream().map(Appointment::toString).collect(Collectors.toList()));
+
+        // So does a snapshot, which keeps the cutoff as well
+        Path snapshot = dir.resolve("clinic.snapshot");
+        clinic.saveSnapshot(snapshot).join();
+        Clinic restored = assertDoesNotThrow(() -> Clinic.loadSnapshot(snapshot));
+        assertEquals(5000, restored.getArchivedAppointmentCount());
+        assertThrows(IllegalArgumentException.class, () -> restored.bookAppointment(patient1, physio1, treatment1, "2024-12-31 09:00"));
+    }
+
+    @Test
+    public void testStartupLoaderMatchesSequentialLoad() {
+        StartupLoader loader = new StartupLoader();
+        Clinic loaded = loader.load();
+
+        Clinic expected = new Clinic();
+        List<Physiotherapist> physios = DataLoader.loadPhysiotherapists();
+        DataLoader.loadTreatments(physios);
+        expected.setPhysiotherapists(physios);
+        expected.setPatients(DataLoader.loadPatients());
+        expected.loadAppointments();
+        DataLoader.loadTimetable(expected);
+
+        assertEquals(expected.getPatients(), loaded.getPatients());
+        assertEquals(expected.getAppointments().toString(), loaded.getAppointments().toString());
+        assertEquals(expected.getAvailabilities().size(), loaded.getAvailabilities().size());
+        for (int i = 0; i < physios.size(); i++) {
+            assertEquals(physios.get(i).getTreatments().size(), loaded.getPhysiotherapists().get(i).getTreatments().size());
+        }
+        assertEquals(5, loader.getLoadTimes().size());
+    }
+
+    @Test
+    public void testPartitionedStorage(@TempDir Path dir) throws Exception {
+        List<Availability> availabilities = new ArrayList<>(clinic.getAvailabilities());
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 3, 3), LocalTime.of(9, 0), LocalTime.of(12, 0)));
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 5, 5), LocalTime.of(9, 0), LocalTime.of(12, 0)));
+        clinic.setAvailabilities(availabilities);
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-03-03 09:00");
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-05-05 09:00");
+
+        Path manifest = dir.resolve("appointments.manifest");
+        clinic.setAppointmentsFile(manifest);
+        clinic.saveAppointments();
+        assertTrue(Files.exists(dir.resolve("appointments-2025-03.1.txt")));
+        assertTrue(Files.exists(dir.resolve("appointments-2025-05.1.txt")));
+
+        // Only April is read; March is paged in when a query needs it
+        Clinic restarted = new Clinic();
+        restarted.setPatients(clinic.getPatients());
+        restarted.setPhysiotherapists(clinic.getPhysiotherapists());
+        restarted.setAvailabilities(clinic.getAvailabilities());
+        restarted.setAppointmentsFile(manifest);
+        restarted.loadAppointments(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 30));
+        assertEquals(1, restarted.getAppointments().size());
+        assertEquals(1, restarted.getAppointments(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)).size());
+        assertEquals(2, restarted.getAppointments().size());
+        assertThrows(IllegalArgumentException.class, () ->
+                restarted.bookAppointment(patient2, physio1, treatment1, "2025-05-05 09:30"));
+        assertEquals(3, restarted.getAppointments().size());
+
+        // A save rewrites only the changed month; the others keep their files
+        restarted.openJournal(AppointmentJournal.SyncPolicy.NEVER, 100);
+        restarted.cancelAppointment("2025-05-05 09:00", physio1);
+        restarted.saveAppointments();
+        restarted.markAttended("2025-03-03 09:00", physio1);
+        restarted.closeJournal();
+        assertTrue(Files.exists(dir.resolve("appointments-2025-03.1.txt")));
+        assertTrue(Files.exists(dir.resolve("appointments-2025-05.2.txt")));
+        assertFalse(Files.exists(dir.resolve("appointments-2025-05.1.txt")));
+
+        // The month named by the journal is read along with the requested range and the change replayed
+        Clinic again = new Clinic();
+        again.setPatients(clinic.getPatients());
+        again.setPhysiotherapists(clinic.getPhysiotherapists());
+        again.setAvailabilities(clinic.getAvailabilities());
+        again.setAppointmentsFile(manifest);
+        again.loadAppointments(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 30));
+        assertEquals(2, again.getAppointments().size());
+
+        // Statistics add the manifest's figures for May instead of paging it in
+        AppointmentStatistics statistics = again.getStatistics();
+        assertEquals(1, statistics.getBooked());
+        assertEquals(1, statistics.getAttended());
+        assertEquals(1, statistics.getCancelled());
+        assertEquals(90.0, statistics.getRevenue(), 0.001);
+        assertEquals(3, again.getStatistics(physio1).getTotal());
+        assertEquals(0, again.getStatistics(physio2).getTotal());
+        assertEquals(2, again.getAppointments().size());
+        assertEquals(Status.ATTENDED, again.findAppointment("2025-03-03 09:00", physio1).getStatus());
+        assertEquals(Status.CANCELLED, again.findAppointment("2025-05-05 09:00", physio1).getStatus());
+        assertEquals(3, again.getAppointments().size());
+    }
+
+    @Test
+    public void testPersistenceWriterCoalesces(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("appointments.txt");
+        clinic.setAppointmentsFile(file);
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+
+        PersistenceWriter writer = new PersistenceWriter(clinic, 60_000);
+        CompletableFuture<Void> first = writer.saveAppointments();
+        clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 09:00");
+        CompletableFuture<Void> second = writer.saveAppointments();
+        assertSame(first, second);
+        assertFalse(Files.exists(file));
+
+        writer.flush().get();
+        assertEquals(2, Files.readAllLines(file).size());
+        assertEquals(1, writer.getBatchCount());
+
+        // Closing writes the last pending batch and rejects further requests
+        clinic.cancelAppointment("2025-04-01 09:00", physio2);
+        CompletableFuture<Void> last = writer.saveAppointments();
+        writer.close();
+        assertTrue(last.isDone());
+        assertTrue(Files.readString(file).contains("CANCELLED"));
+        assertEquals(2, writer.getBatchCount());
+        assertThrows(IllegalStateException.class, writer::saveAppointments);
+    }
+
+    @Test
+    public void testPersistenceWriterReportsFailedWrites(@TempDir Path dir) throws Exception {
+        clinic.setAppointmentsFile(dir.resolve("missing").resolve("appointments.txt"));
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+
+        try (PersistenceWriter writer = new PersistenceWriter(clinic, 60_000)) {
+            CompletableFuture<Void> batch = writer.saveAppointments();
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> writer.flush().get());
+            assertInstanceOf(UncheckedIOException.class, failure.getCause());
+            assertTrue(batch.isCompletedExceptionally());
+        }
+        assertThrows(UncheckedIOException.class, clinic::saveAppointments);
+    }
+
+    private Clinic reloadClinic(Path file) {
+        Clinic restarted = new Clinic();
+        restarted.setPatients(clinic.getPatients());
+        restarted.setPhysiotherapists(clinic.getPhysiotherapists());
+        restarted.setAvailabilities(clinic.getAvailabilities());
+        restarted.setAppointmentsFile(file);
+        restarted.loadAppointments();
+        return restarted;
+    }
+
     @Test
     public void testCancelAppointmentNotFound() {
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
@@ -266,6 +847,27 @@ public class BoostPhysioClinicTest {
         assertEquals("Appointment not found.", exception.getMessage());
     }
 
+    @Test
+    public void testBookAppointmentAfterCancellation() {
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 10:00");
+        clinic.cancelAppointment("2025-04-01 10:00", physio1);
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-04-01 10:30");
+        assertEquals(2, clinic.getAppointments().size());
+
+        // Reviving the cancelled appointment re-indexes it, so the overlapping slot is blocked again
+        clinic.getAppointments().get(1).changeStatus(Status.CANCELLED);
+        clinic.getAppointments().get(0).changeStatus(Status.BOOKED);
+        assertThrows(IllegalArgumentException.class, () ->
+                clinic.bookAppointment(patient2, physio1, treatment1, "2025-04-01 09:30"));
+    }
+
+    @Test
+    public void testBookBackToBackAppointments() {
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-04-01 10:00");
+        assertEquals(2, clinic.getAppointments().size());
+    }
+
     @Test
     public void testSearchByPhysioName() {
         Physiotherapist found = clinic.searchByPhysioName("Dr. Michael Harper");
@@ -285,6 +887,238 @@ public class BoostPhysioClinicTest {
         assertTrue(notFound.isEmpty());
     }
 
+    @Test
+    public void testStatisticsFollowStatusChanges() {
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-04-01 10:00");
+        clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 09:00");
+        clinic.markAttended("2025-04-01 09:00", physio1);
+        clinic.markAttended("2025-04-01 10:00", physio1);
+        clinic.cancelAppointment("2025-04-01 10:00", physio1);
+        clinic.findAppointment("2025-04-01 09:00", physio2).changeStatus(Status.ATTENDED);
+        clinic.rescheduleAppointment("2025-04-01 09:00", physio2, "2025-04-01 10:00");
+
+        AppointmentStatistics harper = clinic.getStatistics(physio1);
+        assertEquals(0, harper.getBooked());
+        assertEquals(1, harper.getAttended());
+        assertEquals(1, harper.getCancelled());
+        assertEquals(90.0, harper.getRevenue(), 0.001);
+        AppointmentStatistics mitchell = clinic.getStatistics(physio2);
+        assertEquals(1, mitchell.getBooked());
+        assertEquals(0, mitchell.getAttended());
+        assertEquals(1, mitchell.getCancelled());
+
+        // Reloading and archiving recount the same totals
+        AppointmentStatistics total = clinic.getStatistics();
+        assertEquals(4, total.getTotal());
+        assertEquals(90.0, total.getRevenue(), 0.001);
+        clinic.setAppointments(new ArrayList<>(clinic.getAppointments()));
+        clinic.archiveAppointmentsBefore(LocalDate.of(2025, 4, 2));
+        assertEquals(4, clinic.getStatistics().getTotal());
+        assertEquals(1, clinic.getStatistics().getAttended());
+        assertEquals(90.0, clinic.getStatistics().getRevenue(), 0.001);
+    }
+
+    @Test
+    public void testWholeClinicQueriesPageInStoredMonths(@TempDir Path dir) throws IOException {
+        List<Availability> availabilities = new ArrayList<>(clinic.getAvailabilities());
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 5, 5), LocalTime.of(9, 0), LocalTime.of(12, 0)));
+        clinic.setAvailabilities(availabilities);
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-05-05 09:00");
+        clinic.markAttended("2025-05-05 09:00", physio1);
+        Path manifest = dir.resolve("appointments.manifest");
+        clinic.setAppointmentsFile(manifest);
+        clinic.saveAppointments();
+
+        // Only April is read at startup, but statistics and reports cover May as well
+        Clinic restarted = new Clinic();
+        restarted.setPatients(clinic.getPatients());
+        restarted.setPhysiotherapists(clinic.getPhysiotherapists());
+        restarted.setAppointmentsFile(manifest);
+        restarted.loadAppointments(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 30));
+        assertEquals(1, restarted.getAppointments().size());
+        assertEquals(2, restarted.getStatistics(physio1).getTotal());
+        assertEquals(90.0, restarted.getStatistics().getRevenue(), 0.001);
+
+        Clinic reported = new Clinic();
+        reported.setPatients(clinic.getPatients());
+        reported.setPhysiotherapists(clinic.getPhysiotherapists());
+        reported.setAppointmentsFile(manifest);
+        reported.loadAppointments(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 30));
+        StringBuilder report = new StringBuilder();
+        new ReportService(reported).generateReport(ReportSink.memory(report));
+        assertTrue(report.toString().contains("2025-05-05 09:00"));
+        assertEquals(2, reported.getAllAppointments().size());
+    }
+
+    @Test
+    public void testDetachedAppointmentsLeaveStatisticsAlone() {
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio2, treatment2, "2025-04-01 09:00");
+        Appointment archived = clinic.findAppointment("2025-04-01 09:00", physio1);
+        Appointment replaced = clinic.findAppointment("2025-04-01 09:00", physio2);
+
+        // A replaced appointment changes on its own; an archived one refuses to change
+        clinic.setAppointments(new ArrayList<>(List.of(archived)));
+        replaced.changeStatus(Status.ATTENDED);
+        clinic.archiveAppointmentsBefore(LocalDate.of(2025, 4, 2));
+        assertThrows(IllegalStateException.class, () -> archived.changeStatus(Status.ATTENDED));
+
+        AppointmentStatistics total = clinic.getStatistics();
+        assertEquals(1, total.getTotal());
+        assertEquals(1, total.getBooked());
+        assertEquals(0.0, total.getRevenue(), 0.001);
+        assertEquals(0, clinic.getStatistics(physio2).getTotal());
+        assertEquals(Status.BOOKED, clinic.getAllAppointments().get(0).getStatus());
+    }
+
+    @Test
+    public void testReportExportLeavesStoredMonthsOnDisk(@TempDir Path dir) throws Exception {
+        List<Availability> availabilities = new ArrayList<>(clinic.getAvailabilities());
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 3, 3), LocalTime.of(9, 0), LocalTime.of(12, 0)));
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 5, 5), LocalTime.of(9, 0), LocalTime.of(12, 0)));
+        clinic.setAvailabilities(availabilities);
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-03-03 09:00");
+        clinic.bookAppointment(patient1, physio1, treatment1, "2025-04-01 09:00");
+        clinic.bookAppointment(patient2, physio1, treatment1, "2025-05-05 09:00");
+        Path manifest = dir.resolve("appointments.manifest");
+        clinic.setAppointmentsFile(manifest);
+        clinic.saveAppointments();
+
+        Clinic restarted = new Clinic();
+        restarted.setPatients(clinic.getPatients());
+        restarted.setPhysiotherapists(clinic.getPhysiotherapists());
+        restarted.setAppointmentsFile(manifest);
+        restarted.loadAppointments(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 30));
+        StringWriter csv = new StringWriter();
+        new ReportExporter(restarted).exportCsv(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 5, 31), csv);
+        assertTrue(csv.toString().contains("2025-03-03 09:00"));
+        assertTrue(csv.toString().contains("2025-05-05 09:00"));
+        assertEquals(1, restarted.getAppointments().size());
+
+        List<Appointment> scanned = restarted.scanAppointments(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 5, 31));
+        assertEquals(3, scanned.size());
+        assertThrows(IllegalStateException.class, () -> scanned.get(0).changeStatus(Status.CANCELLED));
+        assertEquals(1, restarted.getAppointments().size());
+    }
+
+    @Test
+    public void testReportExport() throws Exception {
+        Patient quoted = new Patient("ID103", "Smith, \"Jo\"", "1 King St", "416-555-0103");
+        clinic.addPatient(quoted);
+        List<Appointment> appointments = new ArrayList<>();
+        appointments.add(new Appointment(patient2, physio1, treatment1, "2025-05-02 09:00"));
+        appointments.add(new Appointment(quoted, physio1, treatment1, "2025-04-30 09:00"));
+        appointments.add(new Appointment(patient1, physio2, treatment2, "2025-04-01 09:00"));
+        appointments.add(new Appointment(patient1, physio1, treatment1, "2025-03-31 09:00"));
+        appointments.get(1).changeStatus(Status.ATTENDED);
+        clinic.setAppointments(appointments);
+        ReportExporter exporter = new ReportExporter(clinic);
+
+        StringWriter csv = new StringWriter();
+        exporter.exportCsv(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 5, 31), csv);
+        List<String> lines = List.of(csv.toString().split(System.lineSeparator()));
+        assertEquals(List.of(
+                "date_time,physio_id,physio_name,patient_id,patient_name,treatment,status,cost",
+                "2025-04-01 09:00,ID002,Dr. Sarah Mitchell,ID101,Emily Carter,Pool Therapy,BOOKED,150.00",
+                "2025-04-30 09:00,ID001,Dr. Michael Harper,ID103,\"Smith, \"\"Jo\"\"\",Deep Tissue Massage,ATTENDED,90.00",
+                "2025-05-02 09:00,ID001,Dr. Michael Harper,ID102,Lucas Bennett,Deep Tissue Massage,BOOKED,90.00",
+                "",
+                "physio_id,physio_name,total,attended,booked,cancelled,revenue",
+                "ID001,Dr. Michael Harper,2,1,1,0,90.00",
+                "ID002,Dr. Sarah Mitchell,1,0,1,0,0.00",
+                "",
+                "from,to,total,attended,booked,cancelled,revenue",
+                "2025-04-01,2025-05-31,3,1,2,0,90.00"), lines);
+
+        StringWriter json = new StringWriter();
+        exporter.exportJson(LocalDate.of(2025, 4, 30), LocalDate.of(2025, 4, 30), json);
+        assertEquals("{\"from\":\"2025-04-30\",\"to\":\"2025-04-30\",\"appointments\":[\n"
+                + "{\"dateTime\":\"2025-04-30 09:00\",\"physioId\":\"ID001\",\"physioName\":\"Dr. Michael Harper\","
+                + "\"patientId\":\"ID103\",\"patientName\":\"Smith, \\\"Jo\\\"\",\"treatment\":\"Deep Tissue Massage\","
+                + "\"status\":\"ATTENDED\",\"cost\":90.00}\n"
+                + "],\"physiotherapists\":[\n"
+                + "{\"id\":\"ID001\",\"name\":\"Dr. Michael Harper\",\"total\":1,\"attended\":1,\"booked\":0,\"cancelled\":0,\"revenue\":90.00}\n"
+                + "],\"clinic\":{\"total\":1,\"attended\":1,\"booked\":0,\"cancelled\":0,\"revenue\":90.00}}\n", json.toString());
+        assertThrows(IllegalArgumentException.class,
+                () -> exporter.exportCsv(LocalDate.of(2025, 4, 2), LocalDate.of(2025, 4, 1), new StringWriter()));
+    }
+
+    @Test
+    public void testUtilization() {
+        // Overlapping windows count once; booked minutes only count inside a window
+        List<Availability> availabilities = new ArrayList<>(clinic.getAvailabilities());
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 4, 1), LocalTime.of(11, 0), LocalTime.of(13, 0)));
+        availabilities.add(new Availability("ID001", LocalDate.of(2025, 4, 7), LocalTime.of(9, 0), LocalTime.of(10, 0)));
+        clinic.setAvailabilities(availabilities);
+        List<Appointment> appointments = new ArrayList<>();
+        appointments.add(new Appointment(patient1, physio1, treatment1, "2025-04-01 09:00"));
+        appointments.add(new Appointment(patient2, physio1, treatment1, "2025-04-01 10:30"));
+        appointments.add(new Appointment(patient1, physio1, treatment1, "2025-04-01 12:30"));
+        appointments.add(new Appointment(patient2, physio2, treatment2, "2025-04-01 10:30"));
+        appointments.add(new Appointment(patient1, physio1, treatment1, "2025-04-07 09:00"));
+        appointments.get(1).changeStatus(Status.CANCELLED);
+        appointments.get(4).changeStatus(Status.ATTENDED);
+        clinic.setAppointments(appointments);
+
+        UtilizationReport report = new UtilizationService(clinic).analyze(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 4, 30));
+        assertEquals(List.of("ID001 2025-04-01 240 90", "ID001 2025-04-07 60 60", "ID002 2025-04-01 120 30"),
+                report.getDaily().stream().map(u -> u.getPhysiotherapist().getId() + " " + u.getDate() + " "
+                        + u.getAvailableMinutes() + " " + u.getBookedMinutes()).collect(Collectors.toList()));
+        assertEquals(List.of("ID001 2025-03-31 240 90", "ID001 2025-04-07 60 60", "ID002 2025-03-31 120 30"),
+                report.getWeekly().stream().map(u -> u.getPhysiotherapist().getId() + " " + u.getDate() + " "
+                        + u.getAvailableMinutes() + " " + u.getBookedMinutes()).collect(Collectors.toList()));
+        assertEquals(37.5, report.getDaily().get(0).getOccupancy(), 1e-9);
+        assertEquals(120, report.getAvailableMinutes(DayOfWeek.TUESDAY, 10));
+        assertEquals(30, report.getBookedMinutes(DayOfWeek.TUESDAY, 10));
+        assertEquals(50.0, report.getOccupancy(DayOfWeek.TUESDAY, 9), 1e-9);
+        assertEquals(100.0, report.getOccupancy(DayOfWeek.MONDAY, 9), 1e-9);
+        assertEquals(0.0, report.getOccupancy(DayOfWeek.SUNDAY, 9), 1e-9);
+        assertTrue(new UtilizationService(clinic).analyze(LocalDate.of(2025, 4, 2), LocalDate.of(2025, 4, 6)).getDaily().isEmpty());
+    }
+
+    @Test
+    public void testSurrogateKeys() {
+        assertEquals(0, clinic.getPhysiotherapistKey(physio1));
+        assertEquals(1, clinic.getPhysiotherapistKey(physio2));
+        assertSame(physio2, clinic.getPhysiotherapistByKey(1));
+        assertNull(clinic.getPhysiotherapistByKey(2));
+
+        Patient added = new Patient("ID103", "Sophia Nguyen", "789 Queen St E, Toronto", "416-555-0103");
+        clinic.addPatient(added);
+        assertEquals(2, clinic.getPatientKey(added));
+        assertEquals(3, clinic.getPatientKeyCount());
+
+        // Keys are per clinic and follow the ID: an equal copy shares the key, removal keeps it assigned
+        Patient copy = new Patient("ID101", "Emily Carter", "123 Yonge St, Toronto", "416-555-0101");
+        assertEquals(0, clinic.getPatientKey(copy));
+        clinic.removePatient("ID103");
+        assertSame(added, clinic.getPatientByKey(2));
+        Clinic other = new Clinic();
+        other.setPatients(new ArrayList<>(List.of(patient2, patient1)));
+        assertEquals(0, other.getPatientKey(patient2));
+        assertEquals(0, clinic.getPatientKey(patient1));
+    }
+
+    @Test
+    public void testSearchIndexesFollowUpdates() {
+        assertEquals(physio1, clinic.searchByPhysioName("dr. michael harper"));
+        assertEquals(List.of(physio1), clinic.searchByExpertise("physiotherapy"));
+
+        // Expertise added after registration is picked up by the inverted index
+        physio2.addExpertise("Physiotherapy");
+        assertEquals(List.of(physio1, physio2), clinic.searchByExpertise("Physiotherapy"));
+        assertTrue(physio2.hasExpertise("PHYSIOTHERAPY"));
+
+        Physiotherapist physio3 = new Physiotherapist("ID003", "Dr. Andrew Kim", "303 Bay St, Toronto", "416-555-0203");
+        physio3.addExpertise("Pediatrics");
+        clinic.addPhysiotherapist(physio3);
+        assertEquals(List.of(physio3), clinic.searchByExpertise("Pediatrics"));
+        assertEquals(physio3, clinic.searchByPhysioName("Dr. Andrew Kim"));
+        assertEquals(physio3, clinic.getPhysiotherapistById("ID003"));
+    }
+
     @Test
     public void testBookByExpertiseSuccess() {
         bookingService.bookByExpertise("Physiotherapy", "ID101");
@@ -296,6 +1130,38 @@ public class BoostPhysioClinicTest {
         assertEquals("2025-04-01 09:00", appointment.getDateTime()); // First available slot
     }
 
+    @Test
+    public void testBookByExpertiseChoosesEarliestPhysio() {
+        Physiotherapist physio3 = new Physiotherapist("ID003", "Dr. Andrew Kim", "303 Bay St, Toronto", "416-555-0203");
+        physio3.addExpertise("Physiotherapy");
+        physio3.addTreatment(new Treatment("Pediatric Massage", "Physiotherapy", 60, 90.0));
+        List<Physiotherapist> physios = new ArrayList<>(clinic.getPhysiotherapists());
+        physios.add(physio3);
+        clinic.setPhysiotherapists(physios);
+        List<Availability> availabilities = new ArrayList<>(clinic.getAvailabilities());
+        availabilities.add(new Availability("ID003", LocalDate.of(2025, 4, 1), LocalTime.of(9, 0), LocalTime.of(16, 0)));
+        clinic.setAvailabilities(availabilities);
+
+        // Both physios are free at 09:00, so the tie goes to the lower physio ID
+        bookingService.bookByExpertise("Physiotherapy", "ID101");
+        assertEquals(physio1, clinic.getAppointments().get(0).getPhysiotherapist());
+
+        // Once Dr. Harper's morning is full, the next booking goes to Dr. Kim instead of failing
+        bookingService.bookByExpertise("Physiotherapy", "ID101");
+        bookingService.bookByExpertise("Physiotherapy", "ID101");
+        assertEquals(physio3, clinic.getAppointments().get(1).getPhysiotherapist());
+        assertEquals("2025-04-01 09:00", clinic.getAppointments().get(1).getDateTime());
+        assertEquals(physio1, clinic.getAppointments().get(2).getPhysiotherapist());
+        assertEquals("2025-04-01 10:00", clinic.getAppointments().get(2).getDateTime());
+
+        for (int i = 0; i < 7; i++) {
+            bookingService.bookByExpertise("Physiotherapy", "ID102");
+        }
+        Exception exception = assertThrows(IllegalArgumentException.class, () ->
+                bookingService.bookByExpertise("Physiotherapy", "ID102"));
+        assertEquals("No available slots for the selected physiotherapist.", exception.getMessage());
+    }
+
     @Test
     public void testBookByExpertisePatientNotFound() {
         Exception exception = assertThrows(IllegalArgumentException.class, () -> {
@@ -376,6 +1242,39 @@ public class BoostPhysioClinicTest {
         assertEquals(90.0, totalRevenue, 0.01);
     }
 
+    @Test
+    public void testGenerateReportOrdersPhysiosByAttended(@TempDir Path dir) throws Exception {
+        Physiotherapist physio3 = new Physiotherapist("ID003", "Dr. Andrew Kim", "654 Dundas St, Toronto", "416-555-0203");
+        clinic.addPhysiotherapist(physio3);
+        List<Appointment> appointments = new ArrayList<>();
+        appointments.add(new Appointment(patient1, physio3, treatment1, "2025-04-02 10:00"));
+        appointments.add(new Appointment(patient2, physio1, treatment1, "2025-04-02 09:00"));
+        appointments.add(new Appointment(patient1, physio1, treatment1, "2025-04-01 09:00"));
+        appointments.add(new Appointment(patient2, physio2, treatment2, "2025-04-01 09:00"));
+        appointments.get(1).changeStatus(Status.ATTENDED);
+        appointments.get(2).changeStatus(Status.ATTENDED);
+        appointments.get(3).changeStatus(Status.ATTENDED);
+        clinic.setAppointments(appointments);
+
+        StringBuilder buffer = new StringBuilder();
+        reportService.generateReport(ReportSink.memory(buffer));
+        String report = buffer.toString().replace(System.lineSeparator(), "\n");
+
+        // Most attended appointments first: two, one, none
+        assertTrue(report.indexOf("Name: Dr. Michael Harper") < report.indexOf("Name: Dr. Sarah Mitchell"));
+        assertTrue(report.indexOf("Name: Dr. Sarah Mitchell") < report.indexOf("Name: Dr. Andrew Kim"));
+        // Attended appointments are listed by start time
+        assertTrue(report.indexOf("with Emily Carter at 2025-04-01 09:00") < report.indexOf("with Lucas Bennett at 2025-04-02 09:00"));
+        assertTrue(report.contains("Summary for Dr. Michael Harper:\n-----------------------------------------------------------------\n"
+                + "Total Appointments: 2\n - Attended: 2\n - Booked: 0\n - Cancelled: 0\nTotal Revenue: $180.00"));
+        assertTrue(report.contains("Total Appointments: 4\n - Attended: 3\n - Booked: 1\n - Cancelled: 0\nTotal Clinic Revenue: $330.00"));
+
+        // A file sink receives the same report
+        Path file = dir.resolve("report.txt");
+        reportService.generateReport(ReportSink.file(file));
+        assertEquals(buffer.toString(), Files.readString(file, StandardCharsets.UTF_8));
+    }
+
 
 }
 